@@ -0,0 +1,148 @@
+package ypp170130;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of both CMST heuristics on generated graphs.
+ * <p>
+ * Parameters: shape of the graph, number of vertices V, density (fraction of vertex pairs
+ * joined) and capacity W. Complete and euclidean graphs join every pair, they run at the
+ * first density only and their setup fails for the others, so no case is measured twice.
+ * Reported as throughput and average time; main() adds the GC profiler, so allocation rate
+ * shows up as gc.alloc.rate.norm.
+ * <p>
+ * usage: java -jar bench/target/benchmarks.jar [jmh options, e.g. -p V=5000 -p shape=SPARSE -p density=0.5]
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CmstBenchmark {
+
+    /**
+     * shape of generated graph
+     */
+    public enum Shape {
+        COMPLETE(false), // every pair, uniform random costs
+        SPARSE(true), // root star plus random pairs
+        GEOMETRIC(true), // points in the unit square around a central root, pairs within a radius
+        EUCLIDEAN(false); // same points, every pair, costs are distances
+
+        final boolean density; // true if density decides which pairs are joined
+
+        Shape(boolean density) {
+            this.density = density;
+        }
+    }
+
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+    private static final String FIRST_DENSITY = "0.05";
+
+    @Param({"COMPLETE", "SPARSE", "GEOMETRIC", "EUCLIDEAN"})
+    public Shape shape;
+
+    @Param({"500", "2000"})
+    public int V;
+
+    @Param({FIRST_DENSITY, "0.25"})
+    public double density;
+
+    @Param({"5", "20"})
+    public int W;
+
+    private CsrGraph graph;
+    private CsrGraph lazyGraph;
+    private WMST solver;
+    private WMST lazySolver;
+    private WMST parallelSolver;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (!shape.density && density != Double.parseDouble(FIRST_DENSITY)) {
+            throw new IllegalStateException(shape + " joins every pair, it runs at density " + FIRST_DENSITY + " only");
+        }
+        graph = generate(shape, V, density, W, 42);
+        // adjacency rows are sorted once by esau williams, keep that out of the measurement
+        graph.sortAdjacency();
+        // the graph keeps kruskal's edge order after the first solve, the lazy mode
+        // only runs on a graph without one
+        lazyGraph = generate(shape, V, density, W, 42);
+        lazyGraph.sortAdjacency();
+        solver = new WMST(Tracer.OFF, DISCARD);
+        lazySolver = new WMST(Tracer.OFF, DISCARD).lazySort(true);
+        parallelSolver = new WMST(Tracer.OFF, DISCARD).parallel(true);
+    }
+
+    @Benchmark
+    public void modifiedKruskals(Blackhole bh) {
+        bh.consume(solver.solveModifiedKruskals(graph).weight);
+    }
+
+    @Benchmark
+    public void modifiedKruskalsLazy(Blackhole bh) {
+        bh.consume(lazySolver.solveModifiedKruskals(lazyGraph).weight);
+    }
+
+    @Benchmark
+    public void modifiedKruskalsSweep(Blackhole bh) {
+        // re-solves for W .. 2W - 1 on one graph, edge order and rows are kept
+        for (int w = W; w < 2 * W; w++) {
+            graph.reset(w);
+            bh.consume(solver.solveModifiedKruskals(graph).weight);
+        }
+        graph.reset(W);
+    }
+
+    @Benchmark
+    public void esauWilliams(Blackhole bh) {
+        bh.consume(solver.solveEsauWilliams(graph).weight);
+    }
+
+    @Benchmark
+    public void esauWilliamsParallel(Blackhole bh) {
+        bh.consume(parallelSolver.solveEsauWilliams(graph).weight);
+    }
+
+    /**
+     * generates an instance through InstanceGenerator, vertex 0 is the root
+     * and always has an edge to every vertex, density is ignored for complete graphs
+     */
+    static CsrGraph generate(Shape shape, int V, double density, int W, long seed) {
+        switch (shape) {
+            case COMPLETE:
+                return new InstanceGenerator(InstanceGenerator.Kind.COMPLETE, V, W, seed).toGraph();
+            case SPARSE:
+                return new InstanceGenerator(InstanceGenerator.Kind.RANDOM, V, W, seed)
+                        .probability(density).toGraph();
+            case GEOMETRIC:
+                return new InstanceGenerator(InstanceGenerator.Kind.GEOMETRIC, V, W, seed)
+                        .degree(density * (V - 1)).toGraph();
+            default:
+                return new InstanceGenerator(InstanceGenerator.Kind.EUCLIDEAN, V, W, seed).toGraph();
+        }
+    }
+
+    /**
+     * runs the benchmarks with the GC profiler
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(CmstBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,100 @@
+package ypp170130;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A binary instance must load as the graph it was written from, in kruskal's order if it was
+ * sorted, and a file that does not match its header must be rejected before it is used.
+ */
+class BinaryInstanceTest {
+
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTrip() throws IOException {
+        SplittableRandom rnd = new SplittableRandom(170130);
+        Path file = dir.resolve("g.cmst");
+        for (int i = 0; i < 60; i++) {
+            int V = 2 + rnd.nextInt(40), W = 1 + rnd.nextInt(V);
+            InstanceGenerator gen = new InstanceGenerator(InstanceGenerator.Kind.values()[i % 4], V, W, i)
+                    .probability(0.5);
+            if (i % 2 == 1) {
+                gen.demand(3);
+            }
+            String instance = "instance " + i;
+            CsrGraph g = gen.toGraph();
+
+            BinaryInstance.write(g, file, false);
+            CsrGraph plain = BinaryInstance.load(file);
+            assertEquals(g.V(), plain.V(), instance);
+            assertEquals(g.W, plain.W, instance);
+            assertEquals(g.root, plain.root, instance);
+            assertArrayEquals(g.from, plain.from, instance);
+            assertArrayEquals(g.to, plain.to, instance);
+            assertArrayEquals(g.weight, plain.weight, instance);
+            assertArrayEquals(g.demands(), plain.demands(), instance);
+            assertEquals(W + 1, BinaryInstance.load(file, W + 1).W, instance);
+
+            // edges are stored in kruskal's order and relabeled, the trees weigh the same
+            BinaryInstance.write(g, file, true);
+            CsrGraph sorted = BinaryInstance.load(file);
+            assertTrue(sorted.hasEdgeOrder(), instance);
+            long[] keys = sorted.edgeKeys();
+            long[] order = keys.clone();
+            Arrays.sort(order);
+            assertArrayEquals(order, keys, instance);
+            assertEquals(new WMST(false, DISCARD).solveModifiedKruskals(gen.toGraph()).weight,
+                    new WMST(false, DISCARD).solveModifiedKruskals(sorted).weight, instance);
+            assertEquals(new WMST(false, DISCARD).solveEsauWilliams(gen.toGraph()).weight,
+                    new WMST(false, DISCARD).solveEsauWilliams(BinaryInstance.load(file)).weight, instance);
+        }
+    }
+
+    @Test
+    void rejectsCorruptFiles() throws IOException {
+        Path file = dir.resolve("g.cmst");
+        BinaryInstance.write(new InstanceGenerator(InstanceGenerator.Kind.COMPLETE, 6, 2, 1).demand(2).toGraph(), file, false);
+        byte[] good = Files.readAllBytes(file);
+
+        Files.write(file, Arrays.copyOf(good, good.length - 4)); // last demand missing
+        assertThrows(IOException.class, () -> BinaryInstance.load(file));
+        Files.write(file, Arrays.copyOf(good, 12));
+        assertThrows(IOException.class, () -> BinaryInstance.load(file));
+        Files.write(file, patch(good, 0, 0x12345678)); // magic
+        assertThrows(IOException.class, () -> BinaryInstance.load(file));
+        Files.write(file, patch(good, 2, 1 << 30)); // V
+        assertThrows(IOException.class, () -> BinaryInstance.load(file));
+        Files.write(file, patch(good, 5, 6)); // root
+        assertThrows(IOException.class, () -> BinaryInstance.load(file));
+        Files.write(file, patch(good, 7 + 3, 6)); // from of edge 1
+        assertThrows(IOException.class, () -> BinaryInstance.load(file));
+
+        CsrGraph forest = new CsrGraph(4, 2, new int[]{0, 1}, new int[]{1, 2}, new int[]{1, 1});
+        assertThrows(IOException.class, () -> BinaryInstance.write(forest, file, false));
+    }
+
+    /**
+     * @return copy of bytes with int i set to value
+     */
+    private static byte[] patch(byte[] bytes, int i, int value) {
+        byte[] copy = bytes.clone();
+        ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN).putInt(i * Integer.BYTES, value);
+        return copy;
+    }
+}
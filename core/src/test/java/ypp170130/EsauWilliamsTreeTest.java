@@ -0,0 +1,78 @@
+package ypp170130;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Esau williams must return a capacitated spanning tree whose weight is the sum of its edges.
+ * It used to drop the wrong link to root after a merge, which left graphs that were not trees
+ * on about a third of small random instances.
+ */
+class EsauWilliamsTreeTest {
+
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+    private static final InstanceGenerator.Kind[] KINDS = {
+            InstanceGenerator.Kind.COMPLETE, InstanceGenerator.Kind.RANDOM, InstanceGenerator.Kind.EUCLIDEAN};
+
+    @Test
+    void randomInstancesGiveValidTrees() throws IOException {
+        SplittableRandom rnd = new SplittableRandom(170130);
+        for (int i = 0; i < 400; i++) {
+            int V = 3 + rnd.nextInt(13);
+            int W = 1 + rnd.nextInt(V - 1);
+            InstanceGenerator gen = new InstanceGenerator(KINDS[i % KINDS.length], V, W, i)
+                    .scale(5 + rnd.nextInt(50)) // small costs, many ties
+                    .probability(0.2 + 0.6 * rnd.nextDouble());
+            if (i % 4 == 3) {
+                gen.demand(W);
+            }
+            StringWriter text = new StringWriter();
+            gen.write(text);
+            String instance = i + ": " + text;
+
+            CmstResult r = new WMST(false, DISCARD).solveEsauWilliams(Graph.construct(new Scanner(text.toString())));
+            assertTree(instance, V, W, r);
+            CmstResult c = new WMST(false, DISCARD).solveEsauWilliams(CsrGraph.construct(new Scanner(text.toString())));
+            assertTree(instance, V, W, c);
+            assertEquals(r.weight, c.weight, instance);
+        }
+    }
+
+    /**
+     * V - 1 edges that reach every vertex from the root, subtrees within W, weight is their sum
+     */
+    private static void assertTree(String instance, int V, int W, CmstResult r) {
+        assertTrue(r.feasible, instance);
+        assertEquals(V - 1, r.size(), instance);
+        int[] parent = new int[V];
+        for (int u = 0; u < V; u++) {
+            parent[u] = u;
+        }
+        long weight = 0;
+        for (int i = 0; i < r.size(); i++) {
+            int a = find(parent, r.from[i]), b = find(parent, r.to[i]);
+            assertNotEquals(a, b, instance + "cycle through edge " + r.edges[i]);
+            parent[a] = b;
+            weight += r.cost[i];
+        }
+        assertEquals(weight, r.weight, instance);
+        for (int load : r.loads()) {
+            assertTrue(load <= W, instance + "subtree load " + load);
+        }
+    }
+
+    private static int find(int[] parent, int u) {
+        while (parent[u] != u) {
+            u = parent[u];
+        }
+        return u;
+    }
+}
@@ -0,0 +1,89 @@
+package ypp170130;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.InputMismatchException;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * GraphLoader must read the same graphs as the Scanner of CsrGraph.construct(), from a file
+ * and from a stream of several instances, and reject malformed input with a parse error.
+ */
+class GraphLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void matchesScanner() throws IOException {
+        SplittableRandom rnd = new SplittableRandom(170130);
+        StringWriter all = new StringWriter();
+        CsrGraph[] expected = new CsrGraph[60];
+        for (int i = 0; i < expected.length; i++) {
+            int V = 2 + rnd.nextInt(40);
+            InstanceGenerator gen = new InstanceGenerator(InstanceGenerator.Kind.values()[i % 4], V, 1 + rnd.nextInt(V), i)
+                    .probability(0.5);
+            if (i % 2 == 1) {
+                gen.demand(3);
+            }
+            StringWriter text = new StringWriter();
+            gen.write(text);
+            all.write(text.toString());
+            expected[i] = CsrGraph.construct(new Scanner(text.toString()));
+
+            Path file = dir.resolve(i + ".txt");
+            Files.writeString(file, text.toString());
+            assertSameGraph(expected[i], GraphLoader.load(file), "file " + i);
+        }
+        byte[] bytes = all.toString().getBytes(StandardCharsets.US_ASCII);
+        try (GraphLoader loader = new GraphLoader(new ByteArrayInputStream(bytes))) {
+            for (int i = 0; i < expected.length; i++) {
+                assertTrue(loader.hasNext(), "stream " + i);
+                assertSameGraph(expected[i], loader.next(), "stream " + i);
+            }
+            assertFalse(loader.hasNext());
+            assertEquals(bytes.length, loader.bytes());
+        }
+    }
+
+    @Test
+    void rejectsEdgeOutsideVertices() throws IOException {
+        Path file = dir.resolve("range.txt");
+        Files.writeString(file, "3 2 2\n0 1 4\n1 3 5\n");
+        IOException e = assertThrows(IOException.class, () -> GraphLoader.load(file));
+        assertTrue(e.getMessage().contains("edge 1"), e.getMessage());
+        assertThrows(IOException.class, () -> GraphLoader.candidates(file, 2));
+        Files.writeString(file, "3 2 2\n-1 1 4\n1 2 5\n");
+        assertThrows(IOException.class, () -> GraphLoader.load(file));
+    }
+
+    @Test
+    void rejectsMalformedCounts() throws IOException {
+        Path file = dir.resolve("counts.txt");
+        Files.writeString(file, "3 -2 2\n");
+        assertThrows(InputMismatchException.class, () -> GraphLoader.load(file));
+        Files.write(file, new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, '2', ' ', '1', ' ', '1', ' ', '0', ' ', '1', ' ', '3'});
+        assertThrows(InputMismatchException.class, () -> GraphLoader.load(file));
+    }
+
+    private static void assertSameGraph(CsrGraph expected, CsrGraph actual, String instance) {
+        assertEquals(expected.V(), actual.V(), instance);
+        assertEquals(expected.E(), actual.E(), instance);
+        assertEquals(expected.W, actual.W, instance);
+        assertEquals(expected.root, actual.root, instance);
+        assertArrayEquals(expected.from, actual.from, instance);
+        assertArrayEquals(expected.to, actual.to, instance);
+        assertArrayEquals(expected.weight, actual.weight, instance);
+        assertArrayEquals(expected.demands(), actual.demands(), instance);
+    }
+}
@@ -0,0 +1,174 @@
+package ypp170130;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IncrementalCmst against a graph built afresh from the updated costs after every batch:
+ * the tree must be a feasible cmst of that graph of the reported weight, the entered and left
+ * edges must be the difference of the trees before and after, and a re-solved tree must be
+ * the one a fresh esau williams and local search find.
+ */
+class IncrementalCmstTest {
+
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+    private static final long FOREVER = 1_000_000_000L; // nanos, no run of the search is near it
+    private static final InstanceGenerator.Kind[] KINDS = {
+            InstanceGenerator.Kind.COMPLETE, InstanceGenerator.Kind.RANDOM, InstanceGenerator.Kind.EUCLIDEAN};
+
+    @Test
+    void batchesMatchFreshGraph() {
+        SplittableRandom rnd = new SplittableRandom(170130);
+        int resolves = 0, repairs = 0, moved = 0;
+        for (int i = 0; i < 60; i++) {
+            int V = 8 + rnd.nextInt(50);
+            int W = 2 + rnd.nextInt(V / 2);
+            InstanceGenerator gen = new InstanceGenerator(KINDS[i % KINDS.length], V, W, i).probability(0.4);
+            if (i % 3 == 2) {
+                gen.demand(W);
+            }
+            CsrGraph g = gen.toGraph();
+            int[] weight = g.weight.clone(); // costs as the test sees them
+            int[] tree = new WMST(false, DISCARD).solveEsauWilliams(g).edges.clone();
+            Arrays.sort(tree);
+            IncrementalCmst inc = new IncrementalCmst(g, tree, 10_000);
+
+            for (int batch = 0; batch < 20; batch++) {
+                String instance = "instance " + i + " batch " + batch;
+                // mostly a few updates, now and then enough to re-solve
+                int n = batch % 5 == 4 ? V : 1 + rnd.nextInt(3);
+                int[] u = new int[n], v = new int[n], w = new int[n];
+                BitSet ends = new BitSet(V);
+                for (int k = 0; k < n; k++) {
+                    // tree edges half of the time, so updates hit the tree
+                    int e = rnd.nextBoolean() ? tree[rnd.nextInt(tree.length)] : rnd.nextInt(g.E());
+                    u[k] = g.from[e];
+                    v[k] = g.to[e];
+                    w[k] = 1 + rnd.nextInt(100);
+                    weight[e] = w[k];
+                    ends.set(u[k]);
+                    ends.set(v[k]);
+                }
+                CsrGraph fresh = new CsrGraph(V, g.root, W, g.from.clone(), g.to.clone(), weight.clone());
+                fresh.setDemands(g.demands());
+                long before = weigh(fresh, tree);
+
+                IncrementalCmst.Result r = inc.update(u, v, w);
+                int[] next = inc.tree();
+                assertEquals(ends.cardinality() > V / 4, r.resolved, instance);
+                assertTree(instance, fresh, next, r.weight);
+                assertEquals(r.weight, inc.weight(), instance);
+                assertArrayEquals(difference(next, tree), r.added, instance + " entered");
+                assertArrayEquals(difference(tree, next), r.removed, instance + " left");
+                if (r.resolved) {
+                    resolves++;
+                    int[] start = new WMST(false, DISCARD).solveEsauWilliams(fresh).edges;
+                    LocalSearch search = new LocalSearch(fresh, start, start.length);
+                    search.run(System.nanoTime() + FOREVER);
+                    int[] expected = search.tree();
+                    Arrays.sort(expected);
+                    assertEquals(search.weight(), r.weight, instance);
+                    assertArrayEquals(expected, next, instance);
+                } else {
+                    repairs++;
+                    // groups are spanned anew and moves only improve, the old tree is an upper bound
+                    assertTrue(r.weight <= before, instance + " repair made the tree heavier");
+                }
+                moved += r.added.length;
+                tree = next;
+            }
+        }
+        assertTrue(resolves > 0 && repairs > resolves && moved > 0, resolves + " re-solves, " + repairs + " repairs");
+    }
+
+    @Test
+    void singleUpdateNeverResolves() {
+        // V / 4 is 2 here, the two ends of one edge never exceed it
+        InstanceGenerator gen = new InstanceGenerator(InstanceGenerator.Kind.COMPLETE, 8, 3, 7);
+        CsrGraph g = gen.toGraph();
+        IncrementalCmst inc = new IncrementalCmst(g, new WMST(false, DISCARD).solveEsauWilliams(g).edges, 10_000);
+        for (int e = 0; e < g.E(); e++) {
+            assertFalse(inc.update(new int[]{g.from[e]}, new int[]{g.to[e]}, new int[]{1 + e % 7}).resolved);
+        }
+    }
+
+    @Test
+    void rejectsMissingEdgeBeforeChangingCosts() {
+        CsrGraph g = new CsrGraph(4, 2, new int[]{0, 0, 0, 1}, new int[]{1, 2, 3, 2}, new int[]{5, 5, 5, 1});
+        IncrementalCmst inc = new IncrementalCmst(g, new int[]{0, 2, 3}, 10_000);
+        int[] costs = g.weight.clone();
+        assertThrows(IllegalArgumentException.class,
+                () -> inc.update(new int[]{1, 2}, new int[]{2, 3}, new int[]{9, 9}));
+        assertArrayEquals(costs, g.weight);
+        assertEquals(11, inc.weight());
+    }
+
+    /**
+     * V - 1 edges that reach every vertex, subtrees of the root within W, of the given weight
+     */
+    private static void assertTree(String instance, CsrGraph g, int[] tree, long weight) {
+        int V = g.V();
+        assertEquals(V - 1, tree.length, instance);
+        int[] parent = new int[V];
+        for (int u = 0; u < V; u++) {
+            parent[u] = u;
+        }
+        for (int e : tree) {
+            int a = find(parent, g.from[e]), b = find(parent, g.to[e]);
+            assertNotEquals(a, b, instance + " cycle through edge " + e);
+            parent[a] = b;
+        }
+        assertEquals(weigh(g, tree), weight, instance);
+        // subtrees of the root are the components without it
+        int[] component = new int[V];
+        for (int u = 0; u < V; u++) {
+            component[u] = u;
+        }
+        for (int e : tree) {
+            if (g.from[e] != g.root && g.to[e] != g.root) {
+                component[find(component, g.from[e])] = find(component, g.to[e]);
+            }
+        }
+        long[] load = new long[V];
+        int[] demand = g.demands();
+        for (int u = 0; u < V; u++) {
+            if (u == g.root) continue;
+            int c = find(component, u);
+            load[c] += demand == null ? 1 : demand[u];
+            assertTrue(load[c] <= g.W, instance + " subtree load " + load[c]);
+        }
+    }
+
+    private static long weigh(CsrGraph g, int[] tree) {
+        long weight = 0;
+        for (int e : tree) {
+            weight += g.weight[e];
+        }
+        return weight;
+    }
+
+    private static int find(int[] parent, int u) {
+        while (parent[u] != u) {
+            u = parent[u];
+        }
+        return u;
+    }
+
+    /**
+     * @return labels of a that are not in b, ascending
+     */
+    private static int[] difference(int[] a, int[] b) {
+        BitSet in = new BitSet();
+        for (int e : b) {
+            in.set(e);
+        }
+        return Arrays.stream(a).filter(e -> !in.get(e)).sorted().toArray();
+    }
+}
@@ -0,0 +1,164 @@
+package ypp170130;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LowerBound against the optimum of small instances, found by trying every spanning tree.
+ * The lagrangian bound alone must not exceed the optimum, and the branch and bound must reach
+ * it and report it as exact.
+ */
+class LowerBoundTest {
+
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void boundsMatchBruteForce() {
+        SplittableRandom rnd = new SplittableRandom(170130);
+        int feasible = 0;
+        for (int i = 0; i < 300; i++) {
+            InstanceGenerator.Kind kind = InstanceGenerator.Kind.values()[i % InstanceGenerator.Kind.values().length];
+            int V = 3 + rnd.nextInt(5); // at most 7, 7^5 trees
+            int W = 1 + rnd.nextInt(V - 1);
+            InstanceGenerator gen = new InstanceGenerator(kind, V, W, i)
+                    .scale(5 + rnd.nextInt(50))
+                    .probability(0.6)
+                    .degree(3);
+            if (i % 3 != 0) {
+                gen.demand(1 + rnd.nextInt(W));
+            }
+            String instance = "instance " + i + " " + kind + " V=" + V + " W=" + W;
+            long opt = optimum(gen.toGraph());
+
+            // deadline already passed, only the lagrangian bound of the root node
+            long lagrangian = new LowerBound(gen.toGraph()).solve(Long.MAX_VALUE, System.nanoTime());
+            LowerBound lb = new LowerBound(gen.toGraph());
+            long exact = lb.solve(Long.MAX_VALUE, System.nanoTime() + 10 * SECOND);
+            if (opt == Long.MAX_VALUE) {
+                assertEquals(Long.MAX_VALUE, exact, instance + " has no feasible tree");
+                continue;
+            }
+            feasible++;
+            assertTrue(lagrangian <= opt, instance + " lagrangian " + lagrangian + " > optimum " + opt);
+            assertTrue(lb.exact(), instance);
+            assertEquals(opt, exact, instance);
+
+            CmstResult r = new WMST(false, DISCARD).bound(10_000).solveEsauWilliams(gen.toGraph());
+            if (r.feasible) {
+                assertTrue(r.weight >= opt, instance + " heuristic below optimum");
+                assertTrue(r.optimal, instance);
+                assertEquals(opt, r.lowerBound, instance);
+                assertTrue(r.gap() >= 0, instance);
+            }
+        }
+        assertTrue(feasible > 150, feasible + " feasible instances");
+    }
+
+    /**
+     * least weight of a tree whose subtrees of the root fit in W, every tree is decoded from
+     * its Pruefer code
+     *
+     * @return optimal weight, Long.MAX_VALUE if no tree is feasible
+     */
+    private static long optimum(CsrGraph g) {
+        int V = g.V();
+        int[] demand = g.demands();
+        int[][] cost = new int[V][V];
+        for (int[] row : cost) {
+            Arrays.fill(row, -1);
+        }
+        for (int e = 0; e < g.E(); e++) {
+            cost[g.from[e]][g.to[e]] = g.weight[e];
+            cost[g.to[e]][g.from[e]] = g.weight[e];
+        }
+        int[] code = new int[V - 2];
+        int[] degree = new int[V];
+        int[] parent = new int[V];
+        long best = Long.MAX_VALUE;
+        long trees = (long) Math.pow(V, V - 2);
+        for (long t = 0; t < trees; t++) {
+            long c = t;
+            for (int i = 0; i < code.length; i++) {
+                code[i] = (int) (c % V);
+                c /= V;
+            }
+            long weight = weigh(code, cost, degree, parent);
+            if (weight < best && fits(parent, g.root, g.W, demand)) {
+                best = weight;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * decodes a Pruefer code into parent links of a tree rooted at V - 1
+     *
+     * @return weight of the tree, Long.MAX_VALUE if it uses a missing edge
+     */
+    private static long weigh(int[] code, int[][] cost, int[] degree, int[] parent) {
+        int V = degree.length;
+        Arrays.fill(degree, 1);
+        for (int v : code) {
+            degree[v]++;
+        }
+        long weight = 0;
+        for (int v : code) {
+            int leaf = 0;
+            while (degree[leaf] != 1) {
+                leaf++;
+            }
+            degree[leaf]--;
+            degree[v]--;
+            parent[leaf] = v;
+            weight = add(weight, cost[leaf][v]);
+        }
+        int a = 0;
+        while (degree[a] != 1) {
+            a++;
+        }
+        int b = a + 1;
+        while (degree[b] != 1) {
+            b++;
+        }
+        parent[a] = b; // b is V - 1, the last vertex is never a leaf of the code
+        parent[V - 1] = -1;
+        return add(weight, cost[a][b]);
+    }
+
+    private static long add(long weight, int cost) {
+        return weight == Long.MAX_VALUE || cost < 0 ? Long.MAX_VALUE : weight + cost;
+    }
+
+    /**
+     * @param parent parent links of a tree rooted at V - 1
+     * @return true if every subtree hanging from root carries at most W demand
+     */
+    private static boolean fits(int[] parent, int root, int W, int[] demand) {
+        int V = parent.length;
+        long[] load = new long[V];
+        for (int u = 0; u < V; u++) {
+            if (u == root) continue;
+            // neighbour of root towards u: the last vertex before root on the way up from u,
+            // or the parent of root if u does not hang below root
+            int top = parent[root];
+            for (int v = u; v != -1; v = parent[v]) {
+                if (parent[v] == root) {
+                    top = v;
+                    break;
+                }
+            }
+            load[top] += demand == null ? 1 : demand[u];
+            if (load[top] > W) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
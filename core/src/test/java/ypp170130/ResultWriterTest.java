@@ -0,0 +1,114 @@
+package ypp170130;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Results written by ResultWriter must read back as written, one after another from one
+ * stream, buffered by the caller or not.
+ */
+class ResultWriterTest {
+
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concatenatedBinaryRoundTrip() throws IOException {
+        SplittableRandom rnd = new SplittableRandom(170130);
+        List<CmstResult> written = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            int V = 2 + rnd.nextInt(300);
+            CsrGraph g = new InstanceGenerator(InstanceGenerator.Kind.values()[i % 4], V, 1 + rnd.nextInt(V), i)
+                    .probability(0.3).toGraph();
+            // every third result with the bound stage, which only small instances prove optimal
+            WMST solver = new WMST(false, DISCARD).bound(i % 3 == 0 ? 50 : 0);
+            written.add(i % 2 == 0 ? solver.solveEsauWilliams(g) : solver.solveModifiedKruskals(g));
+        }
+        written.add(CmstResult.infeasible(5));
+        assertTrue(written.stream().anyMatch(r -> r.optimal), "no optimal result");
+        assertTrue(written.stream().anyMatch(r -> r.lowerBound >= 0 && !r.optimal), "no result with a bound only");
+        Path file = dir.resolve("results.bin");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (CmstResult r : written) {
+                ResultWriter.writeBinary(r, out);
+            }
+        }
+
+        try (InputStream in = Files.newInputStream(file)) {
+            assertReadsBack(written, in);
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            assertReadsBack(written, in);
+        }
+    }
+
+    @Test
+    void readsVersion1WithoutBound() throws IOException {
+        // magic, version 1, n = 1, k = 1, weight 7, edge (label 0, 0, 1, 7), load 1
+        ByteBuffer v1 = ByteBuffer.allocate(4 * Integer.BYTES + Long.BYTES + 5 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        v1.putInt(0x434D5352).putInt(1).putInt(1).putInt(1).putLong(7).putInt(0).putInt(0).putInt(1).putInt(7).putInt(1);
+        InputStream in = new ByteArrayInputStream(v1.array());
+        CmstResult r = ResultWriter.readBinary(in);
+        assertEquals(7, r.weight);
+        assertArrayEquals(new int[]{1}, r.to);
+        assertEquals(-1, r.lowerBound);
+        assertFalse(r.optimal);
+        assertTrue(Double.isNaN(r.gap()));
+        assertEquals(-1, in.read());
+
+        v1.putInt(Integer.BYTES, 3); // unknown version
+        assertThrows(IOException.class, () -> ResultWriter.readBinary(new ByteArrayInputStream(v1.array())));
+    }
+
+    @Test
+    void zeroBoundHasNoGap() throws IOException {
+        CsrGraph g = new CsrGraph(3, 1, new int[]{0, 0, 1}, new int[]{1, 2, 2}, new int[]{0, 4, 0});
+        CmstResult r = new WMST(false, DISCARD).solveEsauWilliams(g);
+        r.lowerBound = 0;
+        assertTrue(Double.isNaN(r.gap()));
+        StringWriter text = new StringWriter();
+        ResultWriter.writeText(r, text);
+        assertTrue(text.toString().startsWith("weight 4\nbound 0\nedges 2\n"), text.toString());
+        r.lowerBound = 4;
+        assertEquals(0, r.gap());
+    }
+
+    @Test
+    void textOfResult() throws IOException {
+        CsrGraph g = new CsrGraph(4, 2, new int[]{0, 0, 0, 1}, new int[]{1, 2, 3, 2}, new int[]{5, 6, 7, 1});
+        StringWriter text = new StringWriter();
+        ResultWriter.writeText(new WMST(false, DISCARD).solveEsauWilliams(g), text);
+        ResultWriter.writeText(CmstResult.infeasible(4), text);
+        assertEquals("weight 13\nedges 3\n0 1 5\n0 3 7\n1 2 1\nloads 2 1\ninfeasible\n", text.toString());
+    }
+
+    private static void assertReadsBack(List<CmstResult> written, InputStream in) throws IOException {
+        for (int i = 0; i < written.size(); i++) {
+            CmstResult expected = written.get(i), actual = ResultWriter.readBinary(in);
+            String result = "result " + i;
+            assertEquals(expected.feasible, actual.feasible, result);
+            assertEquals(expected.weight, actual.weight, result);
+            assertArrayEquals(expected.edges, actual.edges, result);
+            assertArrayEquals(expected.from, actual.from, result);
+            assertArrayEquals(expected.to, actual.to, result);
+            assertArrayEquals(expected.cost, actual.cost, result);
+            assertArrayEquals(expected.loads(), actual.loads(), result);
+            assertEquals(expected.lowerBound, actual.lowerBound, result);
+            assertEquals(expected.optimal, actual.optimal, result);
+        }
+        assertEquals(-1, in.read(), "bytes after the last result");
+    }
+}
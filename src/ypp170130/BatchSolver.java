@@ -0,0 +1,233 @@
+package ypp170130;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Batch driver: solves many independent CMST instances in parallel.
+ * <p>
+ * Every instance is solved with both modified kruskal's and esau williams on its own
+ * CsrGraph and WMST, so tasks share nothing but the result writer. One line per instance
+ * is written as soon as it finishes, in completion order:
+ * <pre>
+ * name  V  E  W  kruskal  esau-williams  millis
+ * </pre>
+ * CPU bound batches run on a work stealing pool. I/O bound batches (many small files,
+ * slow disks) can use one virtual thread per instance where the JDK has them (21+),
+ * otherwise a thread pool with more threads than cores. With -improve, both trees go through
+ * the local search stage of WMST with the given time budget each. With -bound, a lower bound
+ * is computed once per instance within the given budget, see LowerBound, and the line gets
+ * three more columns: the bound and the gaps of both trees in percent, a gap is empty if its
+ * tree is infeasible, or if the bound is 0 under a heavier tree and no percentage exists.
+ * <p>
+ * usage: java ypp170130.BatchSolver [-p parallelism] [-io] [-improve millis] [-bound millis]
+ * (directory | file | -)
+ * a directory is read one instance per file, a file or stdin ("-") may hold
+ * several instances one after another.
+ */
+public class BatchSolver implements AutoCloseable {
+
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    private final ExecutorService pool;
+    private final PrintWriter results;
+    private final Semaphore inFlight; // bounds instances parsed but not yet solved
+    private final Phaser pending = new Phaser(1);
+    private long improveMillis; // local search budget per tree, 0 for none
+    private long boundMillis; // lower bound budget per instance, 0 for none
+
+    /**
+     * Constructor
+     *
+     * @param parallelism number of instances solved at the same time
+     * @param ioBound     true to prefer virtual threads over the work stealing pool
+     * @param out         where result lines are written
+     */
+    BatchSolver(int parallelism, boolean ioBound, Writer out) {
+        this.pool = ioBound ? ioPool(parallelism) : new ForkJoinPool(parallelism);
+        this.results = new PrintWriter(new BufferedWriter(out));
+        this.inFlight = new Semaphore(2 * parallelism);
+    }
+
+    /**
+     * @param millis local search budget per tree, 0 to skip the stage
+     * @return this solver
+     */
+    BatchSolver improve(long millis) {
+        this.improveMillis = millis;
+        return this;
+    }
+
+    /**
+     * @param millis lower bound budget per instance, 0 to skip it
+     * @return this solver
+     */
+    BatchSolver bound(long millis) {
+        this.boundMillis = millis;
+        return this;
+    }
+
+    /**
+     * virtual thread per task executor if the running JDK provides one,
+     * fixed pool with four threads per unit of parallelism otherwise
+     */
+    private static ExecutorService ioPool(int parallelism) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(4 * parallelism);
+        }
+    }
+
+    /**
+     * solves every file of a directory, one instance per file
+     *
+     * @param dir directory with instance files
+     */
+    void solveDirectory(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(Files::isRegularFile).sorted()
+                    .forEach(f -> submit(f.getFileName().toString(), () -> GraphLoader.load(f)));
+        }
+    }
+
+    /**
+     * solves instances read one after another from a loader
+     * parsing happens on the calling thread, at most 2 * parallelism
+     * instances wait in memory for a worker
+     *
+     * @param name   prefix of instance names, instances are numbered from 1
+     * @param loader source holding instances
+     */
+    void solveStream(String name, GraphLoader loader) throws IOException {
+        int i = 0;
+        while (loader.hasNext()) {
+            CsrGraph g = loader.next();
+            submit(name + "#" + ++i, () -> g);
+        }
+    }
+
+    /**
+     * queues one instance, the loader runs on the worker
+     */
+    private void submit(String name, Callable<CsrGraph> loader) {
+        inFlight.acquireUninterruptibly();
+        pending.register();
+        pool.execute(() -> {
+            try {
+                report(name, loader.call());
+            } catch (Exception e) {
+                report(name, e);
+            } finally {
+                inFlight.release();
+                pending.arriveAndDeregister();
+            }
+        });
+    }
+
+    /**
+     * solves g with both heuristics and writes its result line
+     */
+    private void report(String name, CsrGraph g) {
+        long start = System.nanoTime();
+        WMST solver = new WMST(false, DISCARD).improve(improveMillis);
+        long kruskal = solver.solveModifiedKruskals(g).weight;
+        long esauWilliams = solver.solveEsauWilliams(g).weight;
+        String bound = boundMillis > 0 ? bound(g, kruskal, esauWilliams) : "";
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        String line = name + "\t" + g.V() + "\t" + g.E() + "\t" + g.W + "\t" + kruskal + "\t" + esauWilliams + "\t" + millis
+                + bound;
+        synchronized (results) {
+            results.println(line);
+            results.flush();
+        }
+    }
+
+    /**
+     * @return columns of the lower bound and the gaps of both trees, empty if both are infeasible
+     */
+    private String bound(CsrGraph g, long kruskal, long esauWilliams) {
+        long best = Math.min(kruskal < 0 ? Long.MAX_VALUE : kruskal, esauWilliams < 0 ? Long.MAX_VALUE : esauWilliams);
+        if (best == Long.MAX_VALUE) {
+            return "\t\t\t";
+        }
+        long lb = new LowerBound(g).solve(best, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(boundMillis));
+        return "\t" + lb + "\t" + gap(kruskal, lb) + "\t" + gap(esauWilliams, lb);
+    }
+
+    /**
+     * @return gap in percent, empty if the tree is infeasible or the gap has no ratio
+     */
+    private static String gap(long weight, long lb) {
+        double gap = weight < 0 ? Double.NaN : CmstResult.gap(weight, lb);
+        return Double.isNaN(gap) ? "" : String.format(Locale.ROOT, "%.2f", 100 * gap);
+    }
+
+    private void report(String name, Throwable e) {
+        synchronized (results) {
+            results.println(name + "\terror: " + e);
+            results.flush();
+        }
+    }
+
+    /**
+     * waits until every submitted instance is reported
+     */
+    void await() {
+        pending.arriveAndAwaitAdvance();
+    }
+
+    /**
+     * waits for outstanding instances and stops the workers
+     */
+    @Override
+    public void close() {
+        await();
+        pool.shutdown();
+        results.flush();
+    }
+
+    /**
+     * Driver Code
+     */
+    public static void main(String[] args) throws IOException {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        boolean ioBound = false;
+        long improveMillis = 0;
+        long boundMillis = 0;
+        String source = "-";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-p":
+                    parallelism = Integer.parseInt(args[++i]);
+                    break;
+                case "-io":
+                    ioBound = true;
+                    break;
+                case "-improve":
+                    improveMillis = Long.parseLong(args[++i]);
+                    break;
+                case "-bound":
+                    boundMillis = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    source = args[i];
+            }
+        }
+        try (BatchSolver batch = new BatchSolver(parallelism, ioBound, new OutputStreamWriter(System.out))) {
+            batch.improve(improveMillis).bound(boundMillis);
+            if (source.equals("-")) {
+                batch.solveStream("stdin", new GraphLoader(System.in));
+            } else if (Files.isDirectory(Paths.get(source))) {
+                batch.solveDirectory(Paths.get(source));
+            } else {
+                try (GraphLoader loader = new GraphLoader(Paths.get(source))) {
+                    batch.solveStream(source, loader);
+                }
+            }
+        }
+    }
+}
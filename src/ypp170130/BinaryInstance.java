@@ -0,0 +1,174 @@
+package ypp170130;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Compact binary instance format, so an instance is parsed once and re-solved many times.
+ * <p>
+ * Little endian ints: a header of
+ * <pre>
+ * magic "CMST", version, V, E, W, root, flags
+ * </pre>
+ * followed by E packed edge triples (u, v, w). Flag SORTED says the triples are
+ * already in modified kruskal's order, then kruskal's skips its sort. Flag DEMANDS says
+ * V demands, one per vertex, follow the triples.
+ * <p>
+ * A file is checked against its header before any array is allocated: its size must be
+ * exactly that of the header, triples and demands, and V may be at most E + 1, a graph
+ * with more vertices cannot be spanned.
+ * <p>
+ * The file is memory-mapped and the triples are moved into the edge arrays of a
+ * CsrGraph in one sequential pass, no text is parsed. Java arrays cannot alias a
+ * mapping, so this single copy is the closest to zero-copy the solvers allow.
+ * <p>
+ * usage: java ypp170130.BinaryInstance [-sort] in.txt out.cmst
+ */
+class BinaryInstance {
+
+    private static final int MAGIC = 0x434D5354; // "CMST"
+    private static final int VERSION = 1;
+    private static final int HEADER = 7 * Integer.BYTES;
+    static final int SORTED = 1; // triples are in kruskal's order
+    static final int DEMANDS = 2; // demands of vertices follow the triples
+
+    private static final int CHUNK = 1 << 26; // triples mapped at a time
+
+    /**
+     * Creates the binary file of a graph
+     *
+     * @param g         graph
+     * @param file      binary file to write
+     * @param sortEdges true to store edges in kruskal's order, edge labels change accordingly
+     */
+    static void write(CsrGraph g, Path file, boolean sortEdges) throws IOException {
+        int E = g.E();
+        if (g.V() - 1L > E) {
+            throw new IOException(g.V() + " vertices cannot be spanned by " + E + " edges");
+        }
+        long[] keys = sortEdges ? g.sortedEdgeKeys() : null;
+        int[] demand = g.demands();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(g.V()).putInt(E).putInt(g.W).putInt(g.root)
+                    .putInt((sortEdges || g.edgesSorted() ? SORTED : 0) | (demand != null ? DEMANDS : 0));
+            header.flip();
+            writeFully(ch, header);
+            ByteBuffer buf = ByteBuffer.allocate(3 * Integer.BYTES * 8192).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < E; i++) {
+                int e = sortEdges ? (int) keys[i] : i;
+                buf.putInt(g.from[e]).putInt(g.to[e]).putInt(g.weight[e]);
+                if (!buf.hasRemaining()) {
+                    buf.flip();
+                    writeFully(ch, buf);
+                    buf.clear();
+                }
+            }
+            for (int u = 0; demand != null && u < g.V(); u++) {
+                if (!buf.hasRemaining()) {
+                    buf.flip();
+                    writeFully(ch, buf);
+                    buf.clear();
+                }
+                buf.putInt(demand[u]);
+            }
+            buf.flip();
+            writeFully(ch, buf);
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+    }
+
+    /**
+     * To create a graph instance from a binary file, with the constraint stored in it
+     *
+     * @param file binary file
+     * @return instance of CsrGraph
+     */
+    static CsrGraph load(Path file) throws IOException {
+        return load(file, -1);
+    }
+
+    /**
+     * To create a graph instance from a binary file with another constraint
+     *
+     * @param file binary file
+     * @param W    constraint to use instead of the stored one, negative to keep it
+     * @return instance of CsrGraph
+     * @throws IOException if the file is not a binary instance, or is corrupt or truncated
+     */
+    static CsrGraph load(Path file, int W) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER) {
+                throw new IOException(file + ": not a binary instance, " + ch.size() + " bytes");
+            }
+            IntBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            if (header.get(0) != MAGIC || header.get(1) != VERSION) {
+                throw new IOException(file + ": not a binary instance of version " + VERSION);
+            }
+            int V = header.get(2), E = header.get(3), root = header.get(5), flags = header.get(6);
+            if (W < 0) {
+                W = header.get(4);
+            }
+            // counts size the arrays, check them before anything is allocated
+            if (V < 1 || E < 0 || root < 0 || root >= V || V - 1L > E) {
+                throw new IOException(file + ": corrupt header, V " + V + ", E " + E + ", root " + root);
+            }
+            long demands = HEADER + 3L * Integer.BYTES * E; // offset of demands
+            long size = demands + ((flags & DEMANDS) != 0 ? (long) Integer.BYTES * V : 0);
+            if (ch.size() != size) {
+                throw new IOException(file + ": " + ch.size() + " bytes, expected " + size + " for "
+                        + V + " vertices and " + E + " edges");
+            }
+            int[] from = new int[E], to = new int[E], weight = new int[E];
+            for (int lo = 0; lo < E; lo += CHUNK) {
+                int n = Math.min(CHUNK, E - lo);
+                IntBuffer edges = ch.map(FileChannel.MapMode.READ_ONLY, HEADER + 3L * Integer.BYTES * lo,
+                        3L * Integer.BYTES * n).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                for (int i = 0, j = 0; i < n; i++, j += 3) {
+                    from[lo + i] = edges.get(j);
+                    to[lo + i] = edges.get(j + 1);
+                    weight[lo + i] = edges.get(j + 2);
+                    if (from[lo + i] < 0 || from[lo + i] >= V || to[lo + i] < 0 || to[lo + i] >= V) {
+                        throw new IOException(file + ": corrupt edge " + (lo + i));
+                    }
+                }
+            }
+            CsrGraph g = new CsrGraph(V, root, W, from, to, weight);
+            if ((flags & SORTED) != 0) {
+                g.markEdgesSorted();
+            }
+            if ((flags & DEMANDS) != 0) {
+                int[] demand = new int[V];
+                ch.map(FileChannel.MapMode.READ_ONLY, demands, (long) Integer.BYTES * V)
+                        .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(demand);
+                g.setDemands(demand);
+            }
+            return g;
+        }
+    }
+
+    /**
+     * Driver Code: converts text instance to binary
+     */
+    public static void main(String[] args) throws IOException {
+        boolean sort = args[0].equals("-sort");
+        int i = sort ? 1 : 0;
+        long start = System.nanoTime();
+        try (GraphLoader loader = new GraphLoader(Paths.get(args[i]))) {
+            CsrGraph g = loader.next();
+            write(g, Paths.get(args[i + 1]), sort);
+            System.out.printf("converted V: %d, E: %d in %d ms%n", g.V(), g.E(), (System.nanoTime() - start) / 1000000);
+        }
+    }
+}
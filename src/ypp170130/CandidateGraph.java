@@ -0,0 +1,241 @@
+package ypp170130;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Candidate lists of a large, typically complete, instance.
+ * <p>
+ * Keeps only the k cheapest edges of every vertex and every edge of the root, so memory and
+ * time of the heuristics scale with k * V instead of V^2. The edges are streamed from their
+ * source, each vertex keeps its k best in a bounded max-heap, the complete graph is not held
+ * in memory. The kept edges form a CsrGraph with labels in source order, so ties break as
+ * they would in the complete graph.
+ * <p>
+ * Esau williams starts from the root edges, which are all kept, so it never needs more. When
+ * modified kruskal's finds the candidates infeasible, widen() doubles k and streams the source
+ * again, until every edge is kept. The last widening then holds the complete graph after all,
+ * at least 16 * V^2 bytes while it is built; limit() caps k to keep large instances within
+ * memory, kruskal's may then stay infeasible. A source that can find near neighbours by
+ * itself, such as PointInstance, only streams edges that can be kept for the current k.
+ */
+class CandidateGraph {
+
+    /**
+     * replays the edges of an instance, same order every time
+     * a source may leave out edges that are among the k cheapest of neither end
+     */
+    interface Source {
+        void edges(int k, InstanceGenerator.EdgeVisitor visit) throws IOException;
+    }
+
+    private final int V, root, W;
+    private final int[] demand; // null if every demand is 1
+    private final Source source;
+    private int k; // edges kept per vertex, besides its root edge
+    private int maxK; // largest k widen() may reach
+    private CsrGraph graph; // candidates for current k, built on demand
+
+    /**
+     * Constructor
+     *
+     * @param V      number of vertices
+     * @param root   central hub
+     * @param W      constraint
+     * @param demand demand of each vertex, null if every demand is 1
+     * @param source edges of the instance
+     * @param k      edges kept per vertex at first
+     */
+    CandidateGraph(int V, int root, int W, int[] demand, Source source, int k) {
+        this.V = V;
+        this.root = root;
+        this.W = W;
+        this.demand = demand;
+        this.source = source;
+        this.k = Math.max(1, k);
+        this.maxK = Math.max(V - 1, 1);
+    }
+
+    /**
+     * candidate lists of a graph held in memory
+     *
+     * @param g graph
+     * @param k edges kept per vertex at first
+     * @return candidate graph
+     */
+    static CandidateGraph of(CsrGraph g, int k) {
+        return new CandidateGraph(g.V(), g.root, g.W, g.demands(), (kept, visit) -> {
+            for (int e = 0; e < g.E(); e++) {
+                visit.edge(g.from[e], g.to[e], g.weight[e]);
+            }
+        }, k);
+    }
+
+    /**
+     * @param maxK largest number of edges per vertex widen() may reach, V - 1 by default
+     * @return this instance
+     */
+    CandidateGraph limit(int maxK) {
+        this.maxK = Math.max(maxK, 1);
+        return this;
+    }
+
+    /**
+     * @return edges kept per vertex
+     */
+    int k() {
+        return k;
+    }
+
+    /**
+     * @return candidate edges as CsrGraph, built on first call after construction or widen()
+     */
+    CsrGraph graph() {
+        if (graph == null) {
+            try {
+                graph = build();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * adds back edges: doubles k, the next graph() streams the source again
+     *
+     * @return false if every edge is kept already, or k reached its limit
+     */
+    boolean widen() {
+        int last = Math.min(V - 1, maxK);
+        if (k >= last) {
+            return false;
+        }
+        k = (int) Math.min(2L * k, last);
+        graph = null;
+        return true;
+    }
+
+    /**
+     * streams the source into bounded max-heaps, one per vertex, then collects
+     * the kept edges in source order
+     */
+    private CsrGraph build() throws IOException {
+        if ((long) V * k > Integer.MAX_VALUE) {
+            throw new IllegalStateException(V + " * " + k + " candidates do not fit");
+        }
+        // heap of u occupies slots u * k .. u * k + size[u] - 1, largest key first
+        long[] keys = new long[V * k]; // (weight, index in source)
+        int[] from = new int[V * k], to = new int[V * k];
+        int[] size = new int[V];
+        // root edges are all kept
+        long[] rootKeys = new long[Math.max(V - 1, 1)];
+        int[] rootFrom = new int[rootKeys.length], rootTo = new int[rootKeys.length];
+        int[] rootCount = new int[1];
+        long[] index = new long[1];
+        source.edges(k, (u, v, w) -> {
+            // the index takes the low half of a key, fail before it runs into the weight
+            if (index[0] > Integer.MAX_VALUE) {
+                throw new IllegalStateException("more than " + Integer.MAX_VALUE
+                        + " edges, source index must fit an int");
+            }
+            long key = ((long) w << 32) | index[0]++;
+            if (u == root || v == root) {
+                int i = rootCount[0]++;
+                if (i == rootKeys.length) {
+                    throw new IllegalStateException("more root edges than vertices");
+                }
+                rootKeys[i] = key;
+                rootFrom[i] = u;
+                rootTo[i] = v;
+                return;
+            }
+            offer(keys, from, to, size, u, key, u, v);
+            offer(keys, from, to, size, v, key, u, v);
+        });
+        // an edge kept by both ends appears twice, order by source index and drop repeats
+        int n = rootCount[0];
+        for (int u = 0; u < V; u++) {
+            n += size[u];
+        }
+        long[] order = new long[n]; // (index in source, slot), slot < 0 for root edges
+        int m = 0;
+        for (int i = 0; i < rootCount[0]; i++) {
+            order[m++] = ((rootKeys[i] & 0xFFFFFFFFL) << 32) | i;
+        }
+        int[] slotOf = new int[n - rootCount[0]];
+        int s = 0;
+        for (int u = 0; u < V; u++) {
+            for (int i = u * k; i < u * k + size[u]; i++) {
+                slotOf[s] = i;
+                order[m++] = ((keys[i] & 0xFFFFFFFFL) << 32) | (rootCount[0] + s);
+                s++;
+            }
+        }
+        Arrays.sort(order);
+        int[] f = new int[n], t = new int[n], w = new int[n];
+        int E = 0;
+        long last = -1;
+        for (long o : order) {
+            long idx = o >>> 32;
+            if (idx == last) continue;
+            last = idx;
+            int j = (int) o;
+            if (j < rootCount[0]) {
+                f[E] = rootFrom[j];
+                t[E] = rootTo[j];
+                w[E] = (int) (rootKeys[j] >> 32);
+            } else {
+                int slot = slotOf[j - rootCount[0]];
+                f[E] = from[slot];
+                t[E] = to[slot];
+                w[E] = (int) (keys[slot] >> 32);
+            }
+            E++;
+        }
+        CsrGraph g = new CsrGraph(V, root, W, Arrays.copyOf(f, E), Arrays.copyOf(t, E), Arrays.copyOf(w, E));
+        g.setDemands(demand);
+        return g;
+    }
+
+    /**
+     * offers an edge to the heap of vertex u, kept if among the k smallest keys so far
+     */
+    private void offer(long[] keys, int[] from, int[] to, int[] size, int u, long key, int f, int t) {
+        int base = u * k;
+        int i;
+        if (size[u] < k) {
+            // sift up from a new leaf
+            i = size[u]++;
+            while (i > 0 && keys[base + (i - 1) / 2] < key) {
+                int p = (i - 1) / 2;
+                move(keys, from, to, base + p, base + i);
+                i = p;
+            }
+        } else if (key < keys[base]) {
+            // replace the largest, sift down from the top
+            i = 0;
+            int n = k;
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= n) break;
+                if (c + 1 < n && keys[base + c + 1] > keys[base + c]) c++;
+                if (keys[base + c] <= key) break;
+                move(keys, from, to, base + c, base + i);
+                i = c;
+            }
+        } else {
+            return;
+        }
+        keys[base + i] = key;
+        from[base + i] = f;
+        to[base + i] = t;
+    }
+
+    private static void move(long[] keys, int[] from, int[] to, int src, int dst) {
+        keys[dst] = keys[src];
+        from[dst] = from[src];
+        to[dst] = to[src];
+    }
+}
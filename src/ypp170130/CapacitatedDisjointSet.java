@@ -0,0 +1,253 @@
+package ypp170130;
+
+import java.util.Arrays;
+
+/**
+ * Union find over vertex indices 0 .. n-1 with the bookkeeping of the cmst heuristics.
+ * <p>
+ * Each cluster knows its size, its load and whether it already has its link to the root.
+ * The load is the sum of the demands of its elements, 1 per vertex unless demands are given,
+ * and is kept as a running total, so capacity checks are O(1).
+ * The root itself never joins a cluster, an edge to the root only marks the
+ * other cluster as connected. Two clusters are merged only if both are not yet
+ * connected to the root and their total load stays within the capacity.
+ * find() is iterative with path halving, union is by size.
+ * The elements of a cluster form a circular list through next(), a merge splices
+ * the two lists in O(1), so a cluster is walked without keeping a set of its elements.
+ * reset() restores singletons in place, so one instance serves many solves.
+ * The lengths of find() paths are counted for SolverMetrics.
+ */
+class CapacitatedDisjointSet {
+
+    // outcome of union()
+    static final int MERGED = 0; // two clusters became one
+    static final int ROOT_LINKED = 1; // cluster got its link to root
+    static final int ALREADY_CONNECTED = 2; // same cluster, or both linked to root
+    static final int CONSTRAINT_VIOLATION = 3; // merged cluster would exceed capacity
+
+    private final int[] parent; // parent[u] == u for representatives
+    private final int[] size; // size of cluster, representative maintains this
+    private final int[] load; // total demand of cluster, representative maintains this
+    private final int[] demand; // demand of each vertex, null if every demand is 1
+    private final boolean[] adjRoot; // true if cluster has connecting link, representative maintains this
+    private final int[] next; // circular list of elements in cluster
+    private final int root;
+    private int capacity;
+    private long finds; // calls of find() since reset
+    private long findSteps; // parent links followed by those calls
+    private int longestFind; // most links followed by one call
+
+    /**
+     * Constructor: every vertex is a cluster of its own
+     *
+     * @param n        number of vertices
+     * @param root     central hub
+     * @param capacity maximum size of a cluster
+     */
+    CapacitatedDisjointSet(int n, int root, int capacity) {
+        this(n, root, capacity, null);
+    }
+
+    /**
+     * Constructor: every vertex is a cluster of its own, with its demand as load
+     *
+     * @param n        number of vertices
+     * @param root     central hub
+     * @param capacity maximum load of a cluster
+     * @param demand   demand of each vertex, null if every demand is 1
+     */
+    CapacitatedDisjointSet(int n, int root, int capacity, int[] demand) {
+        parent = new int[n];
+        size = new int[n];
+        load = new int[n];
+        this.demand = demand;
+        adjRoot = new boolean[n];
+        next = new int[n];
+        this.root = root;
+        reset(capacity);
+    }
+
+    /**
+     * makes every vertex a cluster of its own again, without reallocating
+     *
+     * @param capacity maximum load of a cluster for the next solve
+     */
+    void reset(int capacity) {
+        this.capacity = capacity;
+        for (int u = 0; u < parent.length; u++) {
+            parent[u] = u;
+            next[u] = u;
+        }
+        Arrays.fill(size, 1);
+        if (demand == null) {
+            Arrays.fill(load, 1);
+        } else {
+            System.arraycopy(demand, 0, load, 0, load.length);
+        }
+        Arrays.fill(adjRoot, false);
+        size[root] = 0;
+        load[root] = 0;
+        finds = 0;
+        findSteps = 0;
+        longestFind = 0;
+    }
+
+    /**
+     * finds representative, halving the path on the way
+     *
+     * @param u vertex
+     * @return representative of u
+     */
+    int find(int u) {
+        int steps = 0;
+        while (parent[u] != u) {
+            parent[u] = parent[parent[u]];
+            u = parent[u];
+            steps++;
+        }
+        finds++;
+        findSteps += steps;
+        longestFind = Math.max(longestFind, steps);
+        return u;
+    }
+
+    /**
+     * @return calls of find() since construction or reset
+     */
+    long finds() {
+        return finds;
+    }
+
+    /**
+     * @return parent links followed by all calls of find()
+     */
+    long findSteps() {
+        return findSteps;
+    }
+
+    /**
+     * @return most parent links followed by a single call of find()
+     */
+    int longestFind() {
+        return longestFind;
+    }
+
+    /**
+     * @param u vertex
+     * @return size of the cluster of u
+     */
+    int size(int u) {
+        return size[find(u)];
+    }
+
+    /**
+     * @param rep representative of a cluster
+     * @return size of the cluster, without a find()
+     */
+    int sizeOf(int rep) {
+        return size[rep];
+    }
+
+    /**
+     * @param u vertex
+     * @return total demand of the cluster of u
+     */
+    int load(int u) {
+        return load[find(u)];
+    }
+
+    /**
+     * walk a cluster: start at any element, follow next() until back at the start
+     *
+     * @param u vertex
+     * @return next element in the cluster of u, u itself for a singleton
+     */
+    int next(int u) {
+        return next[u];
+    }
+
+    /**
+     * @param u vertex
+     * @return true if the cluster of u is linked to root
+     */
+    boolean isAdjRoot(int u) {
+        return adjRoot[find(u)];
+    }
+
+    /**
+     * @param outcome value returned by union()
+     * @return true if the edge was accepted
+     */
+    static boolean accepted(int outcome) {
+        return outcome == MERGED || outcome == ROOT_LINKED;
+    }
+
+    /**
+     * @return maximum load of a cluster
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * tells if union(u, v) would accept the edge now, without changing anything
+     * false is final: clusters only grow and links to root stay
+     *
+     * @param u vertex on one end of edge
+     * @param v vertex on other end of edge
+     * @return true if the edge can still join the tree
+     */
+    boolean joinable(int u, int v) {
+        int repU = find(u);
+        int repV = find(v);
+        if (repU == repV || (adjRoot[repU] && adjRoot[repV]) || load[repU] + load[repV] > capacity) {
+            return false;
+        }
+        return !(u == root && adjRoot[repV]) && !(v == root && adjRoot[repU]);
+    }
+
+    /**
+     * unions clusters of u and v if the constraints allow it
+     *
+     * @param u vertex on one end of edge
+     * @param v vertex on other end of edge
+     * @return MERGED or ROOT_LINKED on success, ALREADY_CONNECTED or CONSTRAINT_VIOLATION otherwise
+     */
+    int union(int u, int v) {
+        int repU = find(u);
+        int repV = find(v);
+        // already in same cluster
+        if (repU == repV || (adjRoot[repU] && adjRoot[repV])) {
+            return ALREADY_CONNECTED;
+        }
+        // constraint violation
+        if (load[repU] + load[repV] > capacity) {
+            return CONSTRAINT_VIOLATION;
+        }
+        // handle connections with root
+        if (u == root || v == root) {
+            int rep = u == root ? repV : repU;
+            if (adjRoot[rep]) {
+                return ALREADY_CONNECTED;
+            }
+            adjRoot[rep] = true;
+            return ROOT_LINKED;
+        }
+        // smaller cluster unions under larger one
+        // to maintain shorter trees for efficiency
+        if (size[repU] < size[repV]) {
+            int t = repU;
+            repU = repV;
+            repV = t;
+        }
+        size[repU] += size[repV];
+        load[repU] += load[repV];
+        parent[repV] = repU;
+        adjRoot[repU] |= adjRoot[repV];
+        // splice the two circular lists
+        int t = next[repU];
+        next[repU] = next[repV];
+        next[repV] = t;
+        return MERGED;
+    }
+}
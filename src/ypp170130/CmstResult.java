@@ -0,0 +1,199 @@
+package ypp170130;
+
+import java.util.Collection;
+
+/**
+ * Tree found by a heuristic, in primitive arrays.
+ * <p>
+ * Tree edge i has label edges[i] and joins from[i] and to[i] at cost cost[i], so the
+ * result can be written or inspected without the graph. loads() gives the total demand of
+ * each subtree of the root, it is computed on first call only. The bound stage of WMST sets
+ * a lower bound, gap() then tells how far the tree may be from optimal. Nothing is formatted
+ * here, ResultWriter serializes results in bulk.
+ */
+class CmstResult {
+
+    final boolean feasible;
+    final long weight; // total cost, -1 if infeasible
+    final int[] edges; // labels of tree edges
+    final int[] from; // one end of each tree edge
+    final int[] to; // other end of each tree edge
+    final int[] cost; // weight of each tree edge
+    long lowerBound = -1; // lower bound on the optimal weight, -1 if not computed
+    boolean optimal; // true if lowerBound is the optimal weight
+
+    private final int V; // number of vertices
+    private final int root; // central hub
+    private final int[] demand; // demand of each vertex, null if every demand is 1
+    private int[] loads; // load of each subtree of root, null until computed
+
+    /**
+     * Constructor: arrays are taken over, not copied
+     *
+     * @param V      number of vertices
+     * @param root   central hub
+     * @param demand demand of each vertex, null if every demand is 1
+     * @param edges  labels of tree edges
+     * @param from   one end of each tree edge
+     * @param to     other end of each tree edge
+     * @param cost   weight of each tree edge
+     * @param weight total cost
+     * @param loads  load of each subtree of root, null to compute it on demand
+     */
+    CmstResult(int V, int root, int[] demand, int[] edges, int[] from, int[] to, int[] cost, long weight, int[] loads) {
+        this.feasible = weight >= 0;
+        this.V = V;
+        this.root = root;
+        this.demand = demand;
+        this.edges = edges;
+        this.from = from;
+        this.to = to;
+        this.cost = cost;
+        this.weight = weight;
+        this.loads = loads;
+    }
+
+    /**
+     * @param V number of vertices
+     * @return result of a run that found no tree
+     */
+    static CmstResult infeasible(int V) {
+        int[] none = new int[0];
+        return new CmstResult(V, 0, null, none, none, none, none, -1, none);
+    }
+
+    /**
+     * result from labels of tree edges of a CsrGraph
+     *
+     * @param g      graph
+     * @param labels labels of tree edges
+     * @param n      number of tree edges
+     * @param weight total cost
+     * @return result
+     */
+    static CmstResult of(CsrGraph g, int[] labels, int n, long weight) {
+        int[] edges = new int[n], from = new int[n], to = new int[n], cost = new int[n];
+        for (int i = 0; i < n; i++) {
+            int e = labels[i];
+            edges[i] = e;
+            from[i] = g.from[e];
+            to[i] = g.to[e];
+            cost[i] = g.weight[e];
+        }
+        return new CmstResult(g.V(), g.root, g.demands(), edges, from, to, cost, weight, null);
+    }
+
+    /**
+     * result from tree edges of a Graph, in iteration order of the collection
+     *
+     * @param g      graph
+     * @param tree   tree edges
+     * @param weight total cost
+     * @return result
+     */
+    static CmstResult of(Graph g, Collection<Graph.Edge> tree, long weight) {
+        int n = tree.size();
+        int[] edges = new int[n], from = new int[n], to = new int[n], cost = new int[n];
+        int i = 0;
+        for (Graph.Edge e : tree) {
+            edges[i] = e.label;
+            from[i] = e.getFrom().getIndex();
+            to[i] = e.getTo().getIndex();
+            cost[i++] = e.getWeight();
+        }
+        int[] demand = new int[g.V()];
+        for (int u = 0; u < g.V(); u++) {
+            demand[u] = g.getVertex(u).weight;
+        }
+        return new CmstResult(g.V(), g.root.getIndex(), demand, edges, from, to, cost, weight, null);
+    }
+
+    /**
+     * @return number of tree edges
+     */
+    int size() {
+        return edges.length;
+    }
+
+    /**
+     * @return weight over lower bound minus one, NaN if no bound was computed
+     */
+    double gap() {
+        return lowerBound < 0 ? Double.NaN : gap(weight, lowerBound);
+    }
+
+    /**
+     * @param weight     weight of a tree
+     * @param lowerBound lower bound on the optimal weight
+     * @return weight over lower bound minus one, NaN for a bound of 0 under a heavier tree,
+     * which zero cost edges allow, as no ratio measures that gap
+     */
+    static double gap(long weight, long lowerBound) {
+        if (weight == lowerBound) {
+            return 0;
+        }
+        return lowerBound == 0 ? Double.NaN : (double) (weight - lowerBound) / lowerBound;
+    }
+
+    /**
+     * total demand of each subtree of the root, computed on first call
+     * subtrees are in the order their root edges appear in edges
+     *
+     * @return load of each subtree
+     */
+    int[] loads() {
+        if (loads == null) {
+            loads = computeLoads();
+        }
+        return loads;
+    }
+
+    /**
+     * walks the tree from each root edge, the tree is turned into adjacency arrays first
+     */
+    private int[] computeLoads() {
+        int n = edges.length;
+        int[] start = new int[V + 1];
+        int[] adj = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            start[from[i] + 1]++;
+            start[to[i] + 1]++;
+        }
+        for (int u = 0; u < V; u++) {
+            start[u + 1] += start[u];
+        }
+        int[] fill = new int[V];
+        System.arraycopy(start, 0, fill, 0, V);
+        for (int i = 0; i < n; i++) {
+            adj[fill[from[i]]++] = to[i];
+            adj[fill[to[i]]++] = from[i];
+        }
+        boolean[] seen = new boolean[V];
+        seen[root] = true;
+        int[] stack = new int[V];
+        int[] result = new int[n];
+        int subtrees = 0;
+        for (int i = 0; i < n; i++) {
+            if (from[i] != root && to[i] != root) continue;
+            int top = 0;
+            int s = from[i] == root ? to[i] : from[i];
+            seen[s] = true;
+            stack[top++] = s;
+            int load = 0;
+            while (top > 0) {
+                int u = stack[--top];
+                load += demand == null ? 1 : demand[u];
+                for (int j = start[u]; j < start[u + 1]; j++) {
+                    if (!seen[adj[j]]) {
+                        seen[adj[j]] = true;
+                        stack[top++] = adj[j];
+                    }
+                }
+            }
+            result[subtrees++] = load;
+        }
+        int[] loads = new int[subtrees];
+        System.arraycopy(result, 0, loads, 0, subtrees);
+        return loads;
+    }
+}
@@ -0,0 +1,336 @@
+package ypp170130;
+
+import java.util.Arrays;
+import java.util.Scanner;
+
+/**
+ * Compressed sparse row representation of the graph.
+ * <p>
+ * Alternative backend to Graph for large instances: vertices and edges are plain indices,
+ * everything lives in parallel int arrays, so there is no object per vertex or edge.
+ * Edge e joins from[e] and to[e] with cost weight[e], e is its label from the input.
+ * The edges of vertex u occupy slots offsets[u] .. offsets[u+1]-1 of targets, weights
+ * and edgeIds, which together take 12 bytes per direction of an edge.
+ * Vertex 0 is the root (central hub) unless given otherwise.
+ */
+class CsrGraph {
+
+    final int root; // central hub
+    int W; // constraint, changed by reset()
+    private final int V; // number of vertices
+    private final int E; // number of edges
+
+    // edge list, indexed by edge label
+    final int[] from;
+    final int[] to;
+    final int[] weight;
+
+    // adjacency, slots of u are offsets[u] .. offsets[u + 1] - 1
+    final int[] offsets;
+    final int[] targets; // other end of edge
+    final int[] weights; // cost of edge, copied for locality
+    final int[] edgeIds; // label of edge
+
+    private int[] demand; // demand of each vertex, null if every demand is 1
+    private boolean sorted; // true once every row is in ascending order of weight
+    private boolean edgesSorted; // true if labels already follow kruskal's order
+    private long[] sortedKeys; // kruskal's order of edges, kept across reset()
+
+    /**
+     * Constructor: builds the adjacency arrays from an edge list
+     * the arrays are taken over, not copied
+     *
+     * @param V      number of vertices
+     * @param W      constraint
+     * @param from   from vertex of each edge
+     * @param to     to vertex of each edge
+     * @param weight weight of each edge
+     */
+    CsrGraph(int V, int W, int[] from, int[] to, int[] weight) {
+        this(V, 0, W, from, to, weight);
+    }
+
+    /**
+     * Constructor: builds the adjacency arrays from an edge list with given root
+     * the arrays are taken over, not copied
+     *
+     * @param V      number of vertices
+     * @param root   central hub
+     * @param W      constraint
+     * @param from   from vertex of each edge
+     * @param to     to vertex of each edge
+     * @param weight weight of each edge
+     */
+    CsrGraph(int V, int root, int W, int[] from, int[] to, int[] weight) {
+        this.V = V;
+        this.root = root;
+        this.E = from.length;
+        this.W = W;
+        this.from = from;
+        this.to = to;
+        this.weight = weight;
+        offsets = new int[V + 1];
+        targets = new int[2 * E];
+        weights = new int[2 * E];
+        edgeIds = new int[2 * E];
+        // count degrees, then prefix sums give the row starts
+        for (int e = 0; e < E; e++) {
+            offsets[from[e] + 1]++;
+            offsets[to[e] + 1]++;
+        }
+        for (int u = 0; u < V; u++) {
+            offsets[u + 1] += offsets[u];
+        }
+        // fill rows in order of edge label, same order as Graph.addEdge
+        int[] next = Arrays.copyOf(offsets, V);
+        for (int e = 0; e < E; e++) {
+            int u = from[e], v = to[e];
+            int i = next[u]++;
+            targets[i] = v;
+            weights[i] = weight[e];
+            edgeIds[i] = e;
+            i = next[v]++;
+            targets[i] = u;
+            weights[i] = weight[e];
+            edgeIds[i] = e;
+        }
+    }
+
+    /**
+     * To create a graph instance as provided in parameter
+     *
+     * @param in represents input graph "V E W (u v w)* [demands d0 .. d(V-1)]"
+     * @return instance of CsrGraph, created from `in`
+     */
+    static CsrGraph construct(Scanner in) {
+        int V = in.nextInt();
+        int E = in.nextInt();
+        int W = in.nextInt();
+        int[] from = new int[E], to = new int[E], weight = new int[E];
+        for (int i = 0; i < E; i++) {
+            from[i] = in.nextInt();
+            to[i] = in.nextInt();
+            weight[i] = in.nextInt();
+        }
+        CsrGraph g = new CsrGraph(V, W, from, to, weight);
+        if (in.hasNext("demands")) {
+            in.next();
+            int[] demand = new int[V];
+            for (int u = 0; u < V; u++) {
+                demand[u] = in.nextInt();
+            }
+            g.setDemands(demand);
+        }
+        return g;
+    }
+
+    /**
+     * V() provides count of vertices in graph
+     *
+     * @return number of vertices
+     */
+    int V() {
+        return V;
+    }
+
+    /**
+     * E() provides count of edges in graph
+     *
+     * @return number of edges
+     */
+    int E() {
+        return E;
+    }
+
+    /**
+     * gives vertices demands, capacity then bounds the total demand of a subtree
+     * the array is taken over, not copied
+     *
+     * @param demand demand of each vertex, null if every demand is 1
+     */
+    void setDemands(int[] demand) {
+        this.demand = demand;
+    }
+
+    /**
+     * @return demand of each vertex, null if every demand is 1
+     */
+    int[] demands() {
+        return demand;
+    }
+
+    /**
+     * @param e edge label
+     * @param u vertex on one end of edge
+     * @return vertex on other end of edge
+     */
+    int other(int e, int u) {
+        return from[e] == u ? to[e] : from[e];
+    }
+
+    /**
+     * @param u vertex
+     * @param v vertex
+     * @return label of an edge joining u and v, -1 if there is none
+     */
+    int edge(int u, int v) {
+        for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+            if (targets[i] == v) {
+                return edgeIds[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * changes the cost of an edge, sorted rows of both ends stay sorted
+     * kruskal's edge order is dropped and sorted again on next use
+     *
+     * @param e edge label
+     * @param w new weight
+     */
+    void setWeight(int e, int w) {
+        weight[e] = w;
+        sortedKeys = null;
+        edgesSorted = false;
+        reposition(from[e], e);
+        reposition(to[e], e);
+    }
+
+    /**
+     * updates the slot of edge e in row u, and moves it to its place if rows are sorted
+     */
+    private void reposition(int u, int e) {
+        int lo = offsets[u], hi = offsets[u + 1];
+        int i = lo;
+        while (edgeIds[i] != e) {
+            i++;
+        }
+        weights[i] = weight[e];
+        if (!sorted) {
+            return;
+        }
+        int t = targets[i];
+        long key = ((long) weight[e] << 32) | e;
+        // shift neighbours over the slot, then drop the edge into the gap
+        while (i > lo && (((long) weights[i - 1] << 32) | edgeIds[i - 1]) > key) {
+            copySlot(i - 1, i);
+            i--;
+        }
+        while (i + 1 < hi && (((long) weights[i + 1] << 32) | edgeIds[i + 1]) < key) {
+            copySlot(i + 1, i);
+            i++;
+        }
+        targets[i] = t;
+        weights[i] = weight[e];
+        edgeIds[i] = e;
+    }
+
+    private void copySlot(int src, int dst) {
+        targets[dst] = targets[src];
+        weights[dst] = weights[src];
+        edgeIds[dst] = edgeIds[src];
+    }
+
+    /**
+     * sorts every row in ascending order of weight, ties by edge label
+     * which is the order Graph gets from a stable sort of its edge lists.
+     * Done once, later calls return immediately.
+     */
+    void sortAdjacency() {
+        if (sorted) {
+            return;
+        }
+        long[] keys = new long[0];
+        for (int u = 0; u < V; u++) {
+            int lo = offsets[u], hi = offsets[u + 1];
+            int n = hi - lo;
+            if (keys.length < n) {
+                keys = new long[n];
+            }
+            // pack (weight, label), the label fits into the low 32 bits
+            for (int i = 0; i < n; i++) {
+                keys[i] = ((long) weights[lo + i] << 32) | edgeIds[lo + i];
+            }
+            Arrays.sort(keys, 0, n);
+            for (int i = 0; i < n; i++) {
+                int e = (int) keys[i];
+                edgeIds[lo + i] = e;
+                weights[lo + i] = weight[e];
+                targets[lo + i] = other(e, u);
+            }
+        }
+        sorted = true;
+    }
+
+    /**
+     * edges in the order modified kruskal's examines them, packed as in
+     * Graph.getEdgeArray(): weight in the high and label in the low 32 bits,
+     * sorted with Arrays.parallelSort, so large graphs use every core.
+     * Sorted on first call and kept for later solves, the array must not be modified.
+     *
+     * @return sorted keys, (int) key is the edge label
+     */
+    long[] sortedEdgeKeys() {
+        if (sortedKeys == null) {
+            long[] keys = edgeKeys();
+            if (!edgesSorted) {
+                Arrays.parallelSort(keys);
+            }
+            sortedKeys = keys;
+        }
+        return sortedKeys;
+    }
+
+    /**
+     * @return true if sortedEdgeKeys() is ready without sorting
+     */
+    boolean hasEdgeOrder() {
+        return edgesSorted || sortedKeys != null;
+    }
+
+    /**
+     * prepares the graph to be solved again with another constraint
+     * Solvers keep their union find state per run, so only W changes here,
+     * kruskal's edge order and the sorted rows are kept.
+     *
+     * @param W constraint for the next solve
+     */
+    void reset(int W) {
+        this.W = W;
+    }
+
+    /**
+     * @return packed keys as in sortedEdgeKeys(), in order of label
+     */
+    long[] edgeKeys() {
+        long[] keys = new long[E];
+        for (int e = 0; e < E; e++) {
+            keys[e] = ((long) weight[e] << 32) | e;
+        }
+        return keys;
+    }
+
+    /**
+     * declares that edge labels are already in the order of sortedEdgeKeys(),
+     * as in a binary instance written with sorted edges
+     */
+    void markEdgesSorted() {
+        edgesSorted = true;
+    }
+
+    /**
+     * @return true if edge labels are in kruskal's order
+     */
+    boolean edgesSorted() {
+        return edgesSorted;
+    }
+
+    /**
+     * @param e edge label
+     * @return string representation of edge, same as Graph.Edge
+     */
+    String edgeToString(int e) {
+        return "(" + from[e] + "," + to[e] + ") [" + weight[e] + "]";
+    }
+}
@@ -0,0 +1,76 @@
+package ypp170130;
+
+/**
+ * Set of vertex indices 0 .. n-1 that need re-computation.
+ * <p>
+ * Indices are kept in an int array and flagged, so adding one twice is a no-op
+ * and nothing is allocated after construction. Removal order is last in, first out.
+ */
+class DirtySet {
+
+    private final int[] items;
+    private final boolean[] flagged; // true while index is in the set
+    private int size;
+
+    /**
+     * Constructor: empty set
+     *
+     * @param n number of indices
+     */
+    DirtySet(int n) {
+        items = new int[n];
+        flagged = new boolean[n];
+    }
+
+    /**
+     * @param u index to add, ignored if already present
+     */
+    void add(int u) {
+        if (!flagged[u]) {
+            flagged[u] = true;
+            items[size++] = u;
+        }
+    }
+
+    /**
+     * @return true if there is nothing to recompute
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of indices in set
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param i position, 0 .. size()-1
+     * @return index at position i
+     */
+    int get(int i) {
+        return items[i];
+    }
+
+    /**
+     * removes an index from the set
+     *
+     * @return removed index
+     */
+    int remove() {
+        int u = items[--size];
+        flagged[u] = false;
+        return u;
+    }
+
+    /**
+     * removes every index
+     */
+    void clear() {
+        while (size > 0) {
+            flagged[items[--size]] = false;
+        }
+    }
+}
@@ -11,9 +11,14 @@ import java.util.*;
  */
 class Graph {
 
-    private static int W; // constraint
+    private int W; // constraint, changed by reset()
     Vertex root; // central hub
     AdjacencyList[] adjList;
+    private Edge[] edges; // edges[i] has label i
+    private long[] sortedKeys; // kruskal's order of edges, kept across reset()
+    private CsrGraph csr; // copy for the stages that run on the CSR backend, built on first use
+    private boolean solved; // a solve changed the per-run state since construction or reset()
+    CapacitatedDisjointSet dsu; // union find state of vertices
     private int V;  // number of vertices
     private int E;  // number of edges
 
@@ -21,26 +26,29 @@ class Graph {
      * Constructor: creates empty graph with n vertices, sets Vertex 0 as root
      *
      * @param n number of vertices
+     * @param m number of edges that will be added
+     * @param W constraint, maximum size of a subtree of root
      */
-    private Graph(int n) {
+    private Graph(int n, int m, int W) {
+        this.W = W;
         init(n);
+        edges = new Edge[m];
         root = this.getVertex(0);
-        root.size = 0;
+        dsu = new CapacitatedDisjointSet(n, root.getIndex(), W);
     }
 
     /**
      * To create a graph instance as provided in parameter
      *
-     * @param in represents input graph
+     * @param in represents input graph "V E W (u v w)* [demands d0 .. d(V-1)]"
      * @return instance of Graph, created from `in`
      */
     static Graph construct(Scanner in) {
         int V = in.nextInt();
         int E = in.nextInt();
-        // call default constructor
-        Graph g = new Graph(V);
-        // set constraint
-        W = in.nextInt();
+        // constraint belongs to this graph only
+        int W = in.nextInt();
+        Graph g = new Graph(V, E, W);
         // add E edges
         for (int i = 0; i < E; i++) {
             int u, v, w;
@@ -49,6 +57,16 @@ class Graph {
             w = in.nextInt();
             g.addEdge(g.getVertex(u), g.getVertex(v), w, i);
         }
+        // optional demands of vertices, capacity then bounds the total demand of a subtree
+        if (in.hasNext("demands")) {
+            in.next();
+            int[] demand = new int[V];
+            for (int u = 0; u < V; u++) {
+                demand[u] = in.nextInt();
+                g.getVertex(u).weight = demand[u];
+            }
+            g.dsu = new CapacitatedDisjointSet(V, g.root.getIndex(), W, demand);
+        }
         return g;
     }
 
@@ -69,12 +87,21 @@ class Graph {
         return V;
     }
 
+    /**
+     * W() provides the constraint of this graph
+     *
+     * @return maximum size of a subtree of root
+     */
+    int W() {
+        return W;
+    }
+
     /**
      * E() provides count of edges in graph
      *
      * @return number of edges
      */
-    private int E() {
+    int E() {
         return E;
     }
 
@@ -88,31 +115,127 @@ class Graph {
      */
     private void addEdge(Vertex u, Vertex v, int w, int i) {
         Edge e = new Edge(u, v, w, i);
+        edges[i] = e;
         getAdjacencyList(u).edges.add(e);
         getAdjacencyList(v).edges.add(e);
         E++;
     }
 
     /**
-     * getEdgeArray() return array of edges in graph
-     * Used by modified kruskal's algorithm
+     * getEdgeArray() returns the edges of graph packed as sort keys
+     * Used by modified kruskal's algorithm: each long holds weight in the high
+     * and label in the low 32 bits, so sorting the keys orders edges by weight,
+     * ties by label, without touching an Edge object. getEdge() decodes a key.
+     *
+     * @return one key per edge, in order of label
+     */
+    long[] getEdgeArray() {
+        long[] keys = new long[E()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ((long) edges[i].weight << 32) | i;
+        }
+        return keys;
+    }
+
+    /**
+     * edges in the order modified kruskal's examines them, sorted on first call
+     * and kept for later solves, the array must not be modified
      *
-     * @return edge array containing all edges in graph
+     * @return keys of getEdgeArray() in ascending order
      */
-    Edge[] getEdgeArray() {
-        Edge[] edges = new Edge[E()];
-        int i = 0;
+    long[] sortedEdgeArray() {
+        if (sortedKeys == null) {
+            // sort the edges in ascending order, on all cores for large graphs
+            sortedKeys = getEdgeArray();
+            Arrays.parallelSort(sortedKeys);
+        }
+        return sortedKeys;
+    }
+
+    /**
+     * @return true if sortedEdgeArray() is ready without sorting
+     */
+    boolean hasEdgeOrder() {
+        return sortedKeys != null;
+    }
+
+    /**
+     * prepares the graph to be solved again with another constraint
+     * Only the union find state, edge marks and esau williams fields of vertices
+     * are reset, kruskal's edge order and sorted adjacency lists are kept.
+     * A sweep over W then costs a linear pass per value on top of each solve.
+     *
+     * @param W constraint for the next solve
+     */
+    void reset(int W) {
+        this.W = W;
+        solved = false;
+        if (csr != null) {
+            csr.reset(W);
+        }
+        dsu.reset(W);
+        for (int i = 0; i < E; i++) {
+            edges[i].s = Status.UNPROCESSED;
+        }
         for (AdjacencyList al : adjList) {
-            Vertex u = al.getVertex();
-            for (Edge e : al.edges) {
-                Vertex v = e.getOther(u);
-                // we dont want edges to appear twice
-                if (u.getName() < v.getName()) { // trick
-                    edges[i++] = e;
-                }
-            }
+            al.cursor = 0;
+            al.u.connectingLink = null;
+            al.u.tradeoffEdge = null;
+            al.u.tradeoff = 0;
+        }
+    }
+
+    /**
+     * called by the solvers of WMST before they change per-run state, starts that state over
+     * with the same W if an earlier solve left it behind, so solves of one graph do not depend
+     * on each other whether or not reset() was called in between
+     */
+    void beginSolve() {
+        if (solved) {
+            reset(W);
+        }
+        solved = true;
+    }
+
+    /**
+     * @param key key from getEdgeArray()
+     * @return edge whose key it is
+     */
+    Edge getEdge(long key) {
+        return edges[(int) key];
+    }
+
+    /**
+     * @return copy of this graph as CsrGraph, same edge labels, demands included
+     */
+    CsrGraph toCsrGraph() {
+        int[] from = new int[E], to = new int[E], weight = new int[E];
+        for (int i = 0; i < E; i++) {
+            from[i] = edges[i].getFrom().getIndex();
+            to[i] = edges[i].getTo().getIndex();
+            weight[i] = edges[i].getWeight();
+        }
+        CsrGraph g = new CsrGraph(V, root.getIndex(), W, from, to, weight);
+        int[] demand = new int[V];
+        for (int u = 0; u < V; u++) {
+            demand[u] = getVertex(u).weight;
+        }
+        g.setDemands(demand);
+        return g;
+    }
+
+    /**
+     * CsrGraph copy shared by the improvement, bound and multi-start stages of every solve,
+     * built on first call in O(V + E). Its rows get sorted by those stages, this graph is
+     * not changed. reset() passes a new W on to it.
+     *
+     * @return copy of this graph as CsrGraph, the same on every call
+     */
+    CsrGraph csrView() {
+        if (csr == null) {
+            csr = toCsrGraph();
         }
-        return edges;
+        return csr;
     }
 
     /**
@@ -145,7 +268,7 @@ class Graph {
         System.out.println("Graph: n: " + V() + ", m: " + E());
         for (AdjacencyList al : adjList) {
             Vertex u = al.getVertex();
-            System.out.print(u + "(" + u.size + ") : ");
+            System.out.print(u + "(" + dsu.load(u.getIndex()) + ") : ");
             for (Edge e : al.edges) {
                 System.out.print(" " + e);
             }
@@ -166,23 +289,18 @@ class Graph {
     /**
      * Represents Vertex in graph
      * Contains fields used by kruskal's and esau-williams in WMST.
-     * Also defines union() and find() for both of these algorithms.
+     * Also defines union() and find() for both of these algorithms,
+     * on top of the graph's CapacitatedDisjointSet.
      */
     public class Vertex {
         int label; // identifier for vertex
-        int weight;
-
-        // used in union find algorithm
-        Vertex representative; // cluster leader
-        boolean isAdjRoot; // set to true if it has connecting link
-        int size; // size of cluster, cluster representative maintains this
+        int weight; // demand, 1 unless given in input
 
-        // used in esau williams
-        Set<Vertex> elements = new HashSet<>(); // elements in cluster
+        // used in esau williams, fields of the cluster are kept by its representative
+        // elements of the cluster are listed by dsu.next()
         Edge connectingLink; // connecting link to root of this cluster
         int tradeoff; // tradeoff value
         Edge tradeoffEdge; // edge corresponding to tradeoff value
-        Edge defaultLink; // initially this connected node to root
 
         /**
          * Constructor
@@ -191,9 +309,6 @@ class Graph {
          */
         Vertex(int u) {
             label = u;
-            // initially each node is independent
-            representative = this;
-            size = 1;
         }
 
         /**
@@ -218,136 +333,50 @@ class Graph {
         }
 
         /**
-         * recursively finds representative
-         * incorporates path compression
-         *
          * @return representative of this vertex
          */
         Vertex find() {
-            if (this != this.representative) {
-                this.representative = this.representative.find();
-            }
-            return representative;
+            return getVertex(dsu.find(label));
         }
 
         /**
-         * unions vertex 'this' and v if possible, return true if success
-         * returns false otherwise
+         * unions vertex 'this' and v if possible
          *
          * @param v vertex with which union is to be performed
-         * @return true if success, false otherwise
+         * @return outcome of CapacitatedDisjointSet.union()
          */
-        boolean union(Vertex v) {
-            Vertex u = this;
-            Vertex repU = u.find();
-            Vertex repV = v.find();
-            // already in same cluster
-            if ((repU == repV) || (repU.isAdjRoot && repV.isAdjRoot)) {
-                WMST.print(": reject, already connected");
-                return false;
-            }
-            // constraint violation
-            if (repU.size + repV.size > W) {
-                WMST.print(": constraint violation");
-                return false;
-            }
-            // handle connections with root
-            if (u == root && !repV.isAdjRoot) {
-                repV.isAdjRoot = true;
-                return true;
-            }
-            if (v == root && !repU.isAdjRoot) {
-                repU.isAdjRoot = true;
-                return true;
-            }
-            if (u == root || v == root) {
-                WMST.print(": reject, already connected");
-                return false;
-            }
-            // smaller cluster unions under larger one
-            // to maintain shorter trees for efficiency
-            if (repU.size >= repV.size) {
-                repU.size += repV.size;
-                repV.representative = repU;
-                if (repV.isAdjRoot) {
-                    repU.isAdjRoot = true;
-                }
-            } else {
-                repV.size += repU.size;
-                repU.representative = repV;
-                if (repU.isAdjRoot) {
-                    repV.isAdjRoot = true;
-                }
-            }
-            return true;
+        int union(Vertex v) {
+            return dsu.union(label, v.label);
+        }
+
+        /**
+         * @param v vertex on other end of edge
+         * @return true if union(v) could still succeed
+         */
+        boolean joinable(Vertex v) {
+            return dsu.joinable(label, v.label);
         }
 
         /**
          * Similar to union() but does additional work
-         * Used by esau williams
+         * Used by esau williams: 'this' is the vertex whose tradeoff selected the edge,
+         * so the edge replaces the connecting link of its cluster, the merged cluster
+         * keeps the connecting link of the cluster of v
          *
-         * @param v       vertex with which union is performed
-         * @param updated wrapper to vertex whose tradeoff needs to be recomputed
-         * @return true on success, false otherwise
+         * @param v        vertex on other end of selected edge
+         * @param replaced wrapper to connecting link that leaves the tree
+         * @return outcome of CapacitatedDisjointSet.union()
          */
-        boolean unionEW(Vertex v, Vertex[] updated) {
-            Vertex u = this;
-            Vertex repU, repV;
-            repU = u.find();
-            repV = v.find();
-            // already in same cluster
-            if ((repU == repV) || (repU.isAdjRoot && repV.isAdjRoot)) {
-                WMST.print("\nalready connected");
-                return false;
-            }
-            // constraint violation
-            if (repU.size + repV.size > W) {
-                WMST.print("\nconstraint violation");
-                return false;
-            }
-            // handle connection with root
-            if (u == root && !repV.isAdjRoot) {
-                repV.isAdjRoot = true;
-                return true;
-            }
-            if (v == root && !repU.isAdjRoot) {
-                repU.isAdjRoot = true;
-                return true;
-            }
-            if (u == root || v == root) {
-                WMST.print("\nalready connected");
-                return false;
-            }
-            // smaller cluster unions under larger one
-            // to maintain shorter trees for efficiency
-            if (repU.size >= repV.size) {
-                repU.size += repV.size;
-                repU.elements.addAll(repV.elements);
-                // update connecting link if comp(v) has better edge
-                if (repU.connectingLink.weight > repV.connectingLink.weight) {
-                    repU.connectingLink = repV.connectingLink;
-                }
-                repV.representative = repU;
-                // if comp(v) is connected to root, save this for comp(u)
-                if (repV.isAdjRoot) {
-                    repU.isAdjRoot = true;
-                }
-                updated[0] = v;
-            } else {
-                repV.size += repU.size;
-                repV.elements.addAll(repU.elements);
-                // update connecting link if comp(u) has better edge
-                if (repV.connectingLink.weight > repU.connectingLink.weight) {
-                    repV.connectingLink = repU.connectingLink;
-                }
-                repU.representative = repV;
-                // if comp(u) is connected to root, save this for comp(v)
-                if (repU.isAdjRoot) {
-                    repV.isAdjRoot = true;
-                }
-                updated[0] = v;
+        int unionEW(Vertex v, Edge[] replaced) {
+            Vertex repU = this.find();
+            Vertex repV = v.find();
+            int outcome = dsu.union(label, v.label);
+            if (outcome != CapacitatedDisjointSet.MERGED) {
+                return outcome;
             }
-            return true;
+            replaced[0] = repU.connectingLink;
+            this.find().connectingLink = repV.connectingLink;
+            return outcome;
         }
 
         /**
@@ -497,13 +526,17 @@ class Graph {
         Vertex u;
         List<Edge> edges;
 
+        // used in esau williams
+        private Edge[] sorted; // edges in ascending order of weight
+        private int cursor; // edges before cursor are no longer unprocessed
+
         /**
          * Constructor
          *
          * @param u vertex
          */
         AdjacencyList(int u) {
-            this.u = new Vertex(u);
+            this.u = new Vertex(u, 1);
             edges = new LinkedList<>();
         }
 
@@ -513,5 +546,37 @@ class Graph {
         Vertex getVertex() {
             return u;
         }
+
+        /**
+         * builds the sorted edge array on first call, and rewinds the cursor
+         */
+        void sortEdges() {
+            if (sorted == null) {
+                sorted = edges.toArray(new Edge[0]);
+                Arrays.sort(sorted);
+            }
+            cursor = 0;
+        }
+
+        /**
+         * @return edges in ascending order of weight, valid after sortEdges()
+         */
+        Edge[] sortedEdges() {
+            return sorted;
+        }
+
+        /**
+         * cheapest edge of this vertex which is still unprocessed
+         * edges never return to unprocessed, so the cursor only moves forward
+         * and the whole run costs O(degree) per vertex
+         *
+         * @return next unprocessed edge, null if there is none
+         */
+        Edge nextUnprocessed() {
+            while (cursor < sorted.length && sorted[cursor].s != Status.UNPROCESSED) {
+                cursor++;
+            }
+            return cursor < sorted.length ? sorted[cursor] : null;
+        }
     }
 }
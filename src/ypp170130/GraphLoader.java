@@ -0,0 +1,331 @@
+package ypp170130;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming loader for the "V E W (u v w)* [demands d0 .. d(V-1)]" input format.
+ * <p>
+ * Replaces Scanner for large instances: bytes are tokenized straight into the edge arrays
+ * of a CsrGraph, without regex, boxing or intermediate strings. Input must be ASCII.
+ * Graph.construct() and CsrGraph.construct() keep their Scanner for the small inline
+ * samples of WMST.main(), instance files in text format go through this loader. Files are memory-mapped
+ * window by window, other streams are read through a reusable byte buffer.
+ * A source may hold several instances one after another.
+ * The loader keeps count of bytes and time spent, rate() reports the MB/s achieved.
+ */
+class GraphLoader implements Closeable {
+
+    private static final int WINDOW = 1 << 30; // bytes of a file mapped at a time
+    private static final int BUFFER = 1 << 16; // bytes read at a time from a stream
+    private static final byte[] DEMANDS = {'d', 'e', 'm', 'a', 'n', 'd', 's'}; // keyword of optional demands
+
+    private final FileChannel channel; // source when loading a file
+    private final InputStream in; // source otherwise
+    private long mapped; // file offset where the current window ends
+    private ByteBuffer buf;
+    private long consumed; // bytes of earlier windows/buffers
+    private long nanos; // time spent in next()
+
+    /**
+     * Constructor: memory-maps the file
+     *
+     * @param file instance file
+     */
+    GraphLoader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        in = null;
+        buf = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Constructor: reads the stream through a buffer
+     *
+     * @param in stream holding instances
+     */
+    GraphLoader(InputStream in) {
+        channel = null;
+        this.in = in;
+        buf = ByteBuffer.allocate(BUFFER);
+        buf.limit(0);
+    }
+
+    /**
+     * To create a graph instance from a file
+     *
+     * @param file instance file
+     * @return instance of CsrGraph
+     */
+    static CsrGraph load(Path file) throws IOException {
+        try (GraphLoader loader = new GraphLoader(file)) {
+            return loader.next();
+        }
+    }
+
+    /**
+     * @return true if another instance follows
+     */
+    boolean hasNext() throws IOException {
+        int c = skipWhitespace();
+        if (c < 0) {
+            return false;
+        }
+        buf.position(buf.position() - 1); // unread c
+        return true;
+    }
+
+    /**
+     * reads the next instance, with its demands if a "demands" section follows the edges
+     *
+     * @return instance of CsrGraph
+     * @throws NoSuchElementException if input ends early
+     * @throws InputMismatchException if a token is not an int
+     * @throws IOException            if an edge has an end outside 0 .. V - 1
+     */
+    CsrGraph next() throws IOException {
+        long start = System.nanoTime();
+        int V = nextCount();
+        int E = nextCount();
+        int W = nextInt();
+        int[] from = new int[E], to = new int[E], weight = new int[E];
+        for (int i = 0; i < E; i++) {
+            from[i] = nextVertex(V, i);
+            to[i] = nextVertex(V, i);
+            weight[i] = nextInt();
+        }
+        CsrGraph g = new CsrGraph(V, W, from, to, weight);
+        g.setDemands(nextDemands(V));
+        nanos += System.nanoTime() - start;
+        return g;
+    }
+
+    /**
+     * To create candidate lists of the first instance of a file, its edges are streamed
+     * instead of held in memory, and streamed again whenever the candidates widen
+     *
+     * @param file instance file
+     * @param k    edges kept per vertex at first
+     * @return instance of CandidateGraph
+     */
+    static CandidateGraph candidates(Path file, int k) throws IOException {
+        try (GraphLoader loader = new GraphLoader(file)) {
+            int V = loader.nextCount();
+            int E = loader.nextCount();
+            int W = loader.nextInt();
+            loader.nextEdges(V, E, (u, v, w) -> { });
+            int[] demand = loader.nextDemands(V);
+            return new CandidateGraph(V, 0, W, demand, (kept, visit) -> {
+                try (GraphLoader edges = new GraphLoader(file)) {
+                    edges.nextInt();
+                    edges.nextInt();
+                    edges.nextInt();
+                    edges.nextEdges(V, E, visit);
+                }
+            }, k);
+        }
+    }
+
+    /**
+     * passes the next E edges to visit, one at a time
+     */
+    private void nextEdges(int V, int E, InstanceGenerator.EdgeVisitor visit) throws IOException {
+        for (int i = 0; i < E; i++) {
+            int u = nextVertex(V, i);
+            int v = nextVertex(V, i);
+            visit.edge(u, v, nextInt());
+        }
+    }
+
+    /**
+     * parses an end of edge i, arrays of the graph are indexed by it
+     *
+     * @throws IOException if it is outside 0 .. V - 1
+     */
+    private int nextVertex(int V, int i) throws IOException {
+        int u = nextInt();
+        if (u < 0 || u >= V) {
+            throw new IOException("edge " + i + " has end " + u + " outside 0 .. " + (V - 1) + " at byte " + bytes());
+        }
+        return u;
+    }
+
+    /**
+     * @return demands if a "demands" section comes next, null otherwise
+     */
+    private int[] nextDemands(int V) throws IOException {
+        if (!nextWord(DEMANDS)) {
+            return null;
+        }
+        int[] demand = new int[V];
+        for (int u = 0; u < V; u++) {
+            demand[u] = nextInt();
+        }
+        return demand;
+    }
+
+    /**
+     * @return number of bytes consumed so far
+     */
+    long bytes() {
+        return consumed + buf.position();
+    }
+
+    /**
+     * @return MB/s achieved by next() so far
+     */
+    double rate() {
+        return nanos == 0 ? 0 : bytes() / 1e6 / (nanos / 1e9);
+    }
+
+    /**
+     * parses an optionally signed decimal int
+     */
+    private int nextInt() throws IOException {
+        int c = skipWhitespace();
+        if (c < 0) {
+            throw new NoSuchElementException("input ended at byte " + bytes());
+        }
+        boolean negative = c == '-';
+        if (negative) {
+            c = read();
+        }
+        if (c < '0' || c > '9') {
+            throw new InputMismatchException("not an int at byte " + bytes());
+        }
+        long value = 0;
+        do {
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE + 1L) {
+                throw new InputMismatchException("int overflow at byte " + bytes());
+            }
+            c = read();
+        } while (c >= '0' && c <= '9');
+        if (c > ' ') {
+            throw new InputMismatchException("not an int at byte " + bytes());
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new InputMismatchException("int overflow at byte " + bytes());
+        }
+        return (int) value;
+    }
+
+    /**
+     * parses a number of vertices or edges, arrays are sized by it
+     */
+    private int nextCount() throws IOException {
+        int n = nextInt();
+        if (n < 0) {
+            throw new InputMismatchException("negative count " + n + " at byte " + bytes());
+        }
+        return n;
+    }
+
+    /**
+     * consumes a keyword if it comes next, an int or the end of input is left unread
+     *
+     * @param word keyword
+     * @return true if word was consumed
+     */
+    private boolean nextWord(byte[] word) throws IOException {
+        int c = skipWhitespace();
+        if (c < 0) {
+            return false;
+        }
+        if (c != word[0]) {
+            buf.position(buf.position() - 1); // unread c
+            return false;
+        }
+        for (int i = 1; i < word.length; i++) {
+            if (read() != word[i]) {
+                throw new InputMismatchException("expected " + new String(word) + " at byte " + bytes());
+            }
+        }
+        if (read() > ' ') {
+            throw new InputMismatchException("expected " + new String(word) + " at byte " + bytes());
+        }
+        return true;
+    }
+
+    /**
+     * @return first byte that is not whitespace, -1 at end of input
+     */
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c >= 0 && c <= ' ');
+        return c;
+    }
+
+    /**
+     * @return next byte, 0 .. 127, -1 at end of input
+     * @throws InputMismatchException if the byte is not ASCII, a byte order mark included
+     */
+    private int read() throws IOException {
+        if (!buf.hasRemaining() && !refill()) {
+            return -1;
+        }
+        int c = buf.get() & 0xFF;
+        if (c >= 0x80) {
+            throw new InputMismatchException("non-ASCII byte " + c + " at byte " + bytes());
+        }
+        return c;
+    }
+
+    /**
+     * maps the next window of the file, or reads the next block of the stream
+     *
+     * @return false at end of input
+     */
+    private boolean refill() throws IOException {
+        consumed += buf.position();
+        if (channel != null) {
+            long size = channel.size();
+            if (mapped >= size) {
+                buf = ByteBuffer.allocate(0);
+                return false;
+            }
+            long length = Math.min(WINDOW, size - mapped);
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, mapped, length);
+            mapped += length;
+            return true;
+        }
+        int n = in.read(buf.array());
+        if (n <= 0) {
+            buf.limit(0);
+            return false;
+        }
+        buf.position(0);
+        buf.limit(n);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        } else {
+            in.close();
+        }
+    }
+
+    /**
+     * Driver Code: loads every instance of a file and reports the rate
+     */
+    public static void main(String[] args) throws IOException {
+        try (GraphLoader loader = new GraphLoader(Paths.get(args[0]))) {
+            int n = 0;
+            long edges = 0;
+            while (loader.hasNext()) {
+                edges += loader.next().E();
+                n++;
+            }
+            System.out.printf("instances: %d, edges: %d, bytes: %d, rate: %.1f MB/s%n", n, edges, loader.bytes(), loader.rate());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package ypp170130;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Keeps a solved cmst up to date while edge costs change a few at a time.
+ * <p>
+ * The tree is held as groups, the subtrees of the root, by a LocalSearch. A batch of updates
+ * changes the weights in the CsrGraph, recomputes the groups that hold a changed edge, and
+ * looks for improving moves from their vertices only; a group changed by a move has its
+ * vertices looked at again. Groups away from the changes are not touched. When the changed
+ * edges of a batch end in more than a quarter of the vertices a local repair is no cheaper
+ * than starting over, so the tree is solved again by esau williams followed by the local
+ * search. Only the endpoints count, not the groups they lie in, so a single update never
+ * re-solves, however large its groups are.
+ */
+class IncrementalCmst {
+
+    private static final int RESOLVE = 4; // re-solve if more than V / RESOLVE vertices end changed edges
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    /**
+     * outcome of a batch of updates
+     */
+    static final class Result {
+        final long weight; // weight of the tree after the batch
+        final int[] added; // labels of edges that entered the tree
+        final int[] removed; // labels of edges that left the tree
+        final boolean resolved; // true if the tree was solved again from scratch
+
+        Result(long weight, int[] added, int[] removed, boolean resolved) {
+            this.weight = weight;
+            this.added = added;
+            this.removed = removed;
+            this.resolved = resolved;
+        }
+    }
+
+    private final CsrGraph g;
+    private final long millis; // time budget of the local search per batch
+    private final DirtySet work;
+    private final DirtySet ends; // distinct endpoints of the changed edges of a batch
+    private LocalSearch search;
+    private int[] tree; // labels of edges in the tree, ascending
+
+    /**
+     * Constructor
+     *
+     * @param g      solved graph, its weights change with each batch
+     * @param tree   labels of edges of a feasible tree of g
+     * @param millis time budget of the repair of each batch
+     */
+    IncrementalCmst(CsrGraph g, int[] tree, long millis) {
+        this.g = g;
+        this.millis = millis;
+        this.tree = sorted(tree, tree.length);
+        work = new DirtySet(g.V());
+        ends = new DirtySet(g.V());
+        search = new LocalSearch(g, this.tree, this.tree.length);
+    }
+
+    /**
+     * applies a batch of cost updates and repairs the tree
+     *
+     * @param u         one end of each updated edge
+     * @param v         other end of each updated edge
+     * @param newWeight new cost of each updated edge
+     * @return new weight, changed edges and whether the tree was solved again
+     * @throws IllegalArgumentException if some (u, v) is not an edge of the graph
+     */
+    Result update(int[] u, int[] v, int[] newWeight) {
+        int[] changed = new int[u.length];
+        for (int i = 0; i < u.length; i++) {
+            int e = g.edge(u[i], v[i]);
+            if (e < 0) {
+                throw new IllegalArgumentException("no edge (" + u[i] + "," + v[i] + ")");
+            }
+            changed[i] = e;
+        }
+        for (int i = 0; i < u.length; i++) {
+            g.setWeight(changed[i], newWeight[i]);
+            ends.add(u[i]);
+            ends.add(v[i]);
+        }
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        boolean resolved = ends.size() > g.V() / RESOLVE;
+        ends.clear();
+        if (resolved) {
+            work.clear();
+            int[] fresh = new WMST(Tracer.OFF, DISCARD).solveEsauWilliams(g).edges;
+            search = new LocalSearch(g, fresh, fresh.length);
+            search.run(deadline);
+        } else {
+            search.reweighted(changed, changed.length, work);
+            // vertices left when time runs out wait for the next batch
+            search.repair(work, deadline);
+        }
+        int[] next = search.tree();
+        next = sorted(next, g.V() - 1);
+        Result result = new Result(search.weight(), difference(next, tree), difference(tree, next), resolved);
+        tree = next;
+        return result;
+    }
+
+    /**
+     * @return labels of edges in the current tree, ascending
+     */
+    int[] tree() {
+        return tree.clone();
+    }
+
+    /**
+     * @return weight of the current tree
+     */
+    long weight() {
+        return search.weight();
+    }
+
+    private static int[] sorted(int[] labels, int n) {
+        int[] copy = Arrays.copyOf(labels, n);
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    /**
+     * @return labels of a that are not in b, both ascending
+     */
+    private static int[] difference(int[] a, int[] b) {
+        int[] out = new int[a.length];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length; i++) {
+            while (j < b.length && b[j] < a[i]) {
+                j++;
+            }
+            if (j == b.length || b[j] != a[i]) {
+                out[n++] = a[i];
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
@@ -0,0 +1,179 @@
+package ypp170130;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Indexed binary min-heap over vertex indices 0 .. n-1 with int keys.
+ * <p>
+ * Each index is present at most once, pos[] remembers where it sits in the heap,
+ * so changing the key of an index (decrease or increase) costs O(log n).
+ * Ties on key are broken by the smaller index, which matches the order in which
+ * esau williams used to scan the adjacency lists.
+ */
+class IndexedMinHeap {
+
+    private final int[] heap; // heap[i]: index stored at slot i
+    private final int[] pos; // pos[u]: slot of index u, -1 if absent
+    private final int[] key; // key[u]: current key of index u
+    private int size;
+
+    /**
+     * Constructor: creates empty heap for indices 0 .. n-1
+     *
+     * @param n number of indices
+     */
+    IndexedMinHeap(int n) {
+        heap = new int[n];
+        pos = new int[n];
+        key = new int[n];
+        Arrays.fill(pos, -1);
+    }
+
+    /**
+     * removes every index, keeps the allocated arrays
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            pos[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * @return true if heap has no index
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of indices in heap
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param u index
+     * @return true if u is in heap
+     */
+    boolean contains(int u) {
+        return pos[u] >= 0;
+    }
+
+    /**
+     * @param u index in heap
+     * @return key of u
+     */
+    int keyOf(int u) {
+        return key[u];
+    }
+
+    /**
+     * @return index with minimum key
+     */
+    int peekMin() {
+        if (size == 0) {
+            throw new NoSuchElementException("heap is empty");
+        }
+        return heap[0];
+    }
+
+    /**
+     * @return minimum key
+     */
+    int minKey() {
+        return key[peekMin()];
+    }
+
+    /**
+     * inserts u with key k, or moves u to key k if already present
+     *
+     * @param u index
+     * @param k new key
+     */
+    void update(int u, int k) {
+        int i = pos[u];
+        if (i < 0) {
+            key[u] = k;
+            heap[size] = u;
+            pos[u] = size;
+            siftUp(size++);
+            return;
+        }
+        int old = key[u];
+        key[u] = k;
+        if (k < old) {
+            siftUp(i);
+        } else if (k > old) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * removes u from heap, nothing happens if u is absent
+     *
+     * @param u index
+     */
+    void remove(int u) {
+        int i = pos[u];
+        if (i < 0) {
+            return;
+        }
+        int last = heap[--size];
+        pos[u] = -1;
+        if (i == size) {
+            return;
+        }
+        heap[i] = last;
+        pos[last] = i;
+        siftUp(i);
+        siftDown(pos[last]);
+    }
+
+    /**
+     * ordering: smaller key first, smaller index on ties
+     */
+    private boolean less(int a, int b) {
+        return key[a] < key[b] || (key[a] == key[b] && a < b);
+    }
+
+    private void siftUp(int i) {
+        int u = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int p = heap[parent];
+            if (!less(u, p)) {
+                break;
+            }
+            heap[i] = p;
+            pos[p] = i;
+            i = parent;
+        }
+        heap[i] = u;
+        pos[u] = i;
+    }
+
+    private void siftDown(int i) {
+        int u = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if (right < size && less(heap[right], c)) {
+                child = right;
+                c = heap[child];
+            }
+            if (!less(c, u)) {
+                break;
+            }
+            heap[i] = c;
+            pos[c] = i;
+            i = child;
+        }
+        heap[i] = u;
+        pos[u] = i;
+    }
+}
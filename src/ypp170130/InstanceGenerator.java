@@ -0,0 +1,369 @@
+package ypp170130;
+
+import java.io.*;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic CMST instances for scaling tests.
+ * <p>
+ * Vertex 0 is the root and has an edge to every terminal. Kinds of instances:
+ * <ul>
+ * <li>EUCLIDEAN: terminals uniform in the unit square around the root at its center,
+ * complete graph, cost is the distance</li>
+ * <li>GEOMETRIC: same points, terminals joined only within a radius (random geometric graph),
+ * neighbours are found through a grid, so large V stays O(V + E)</li>
+ * <li>COMPLETE: complete graph with uniform random costs</li>
+ * <li>RANDOM: each pair of terminals joined with probability p, uniform random costs</li>
+ * </ul>
+ * Distances are scaled by scale() and rounded up to positive ints. With demand() terminals get
+ * random demands, written as a "demands" section after the edges. Everything derives from
+ * the seed, so the same parameters give the same instance, whether it is built as a CsrGraph
+ * or streamed as text. Streaming needs O(V) memory, so even complete graphs over 10^6
+ * terminals can be written out.
+ * <p>
+ * usage: java ypp170130.InstanceGenerator kind V W seed [radius | p] [-demand max] [-bin file]
+ */
+class InstanceGenerator {
+
+    /**
+     * kind of instance
+     */
+    enum Kind {
+        EUCLIDEAN,
+        GEOMETRIC,
+        COMPLETE,
+        RANDOM
+    }
+
+    /**
+     * receives generated edges
+     */
+    interface EdgeVisitor {
+        void edge(int u, int v, int w) throws IOException;
+    }
+
+    private final Kind kind;
+    private final int V;
+    private final int W;
+    private final long seed;
+    private int scale = 1000; // cost of a unit distance, or maximum random cost
+    private double radius = 0.1; // GEOMETRIC: largest distance joined
+    private double p = 0.1; // RANDOM: probability of joining a pair
+    private int maxDemand; // demands are uniform in 1 .. maxDemand, 0 for no demands
+    private double[] x, y; // coordinates, root at (0, 0)
+
+    /**
+     * Constructor
+     *
+     * @param kind kind of instance
+     * @param V    number of vertices, including root
+     * @param W    constraint
+     * @param seed seed of all random choices
+     */
+    InstanceGenerator(Kind kind, int V, int W, long seed) {
+        this.kind = kind;
+        this.V = V;
+        this.W = W;
+        this.seed = seed;
+    }
+
+    /**
+     * @param scale cost of a unit distance, or maximum random cost
+     * @return this generator
+     */
+    InstanceGenerator scale(int scale) {
+        this.scale = scale;
+        return this;
+    }
+
+    /**
+     * @param radius GEOMETRIC: largest distance between joined terminals
+     * @return this generator
+     */
+    InstanceGenerator radius(double radius) {
+        this.radius = radius;
+        return this;
+    }
+
+    /**
+     * GEOMETRIC: picks the radius that gives terminals about this many neighbours
+     *
+     * @param degree expected number of neighbours of a terminal
+     * @return this generator
+     */
+    InstanceGenerator degree(double degree) {
+        return radius(Math.sqrt(degree / (Math.PI * Math.max(1, V - 1))));
+    }
+
+    /**
+     * @param p RANDOM: probability of joining a pair of terminals
+     * @return this generator
+     */
+    InstanceGenerator probability(double p) {
+        this.p = p;
+        return this;
+    }
+
+    /**
+     * @param maxDemand terminals get demands uniform in 1 .. maxDemand, 0 for none
+     * @return this generator
+     */
+    InstanceGenerator demand(int maxDemand) {
+        this.maxDemand = maxDemand;
+        return this;
+    }
+
+    /**
+     * @return demand of each vertex, root 0, null if demands are off
+     */
+    int[] demands() {
+        if (maxDemand <= 0) {
+            return null;
+        }
+        SplittableRandom rnd = new SplittableRandom(seed ^ 0xD1B54A32D192ED03L);
+        int[] demand = new int[V];
+        for (int u = 1; u < V; u++) {
+            demand[u] = 1 + rnd.nextInt(maxDemand);
+        }
+        return demand;
+    }
+
+    /**
+     * @return number of edges the instance has
+     */
+    long edgeCount() throws IOException {
+        if (kind == Kind.EUCLIDEAN || kind == Kind.COMPLETE) {
+            return (long) V * (V - 1) / 2;
+        }
+        long[] count = new long[1];
+        generate((u, v, w) -> count[0]++);
+        return count[0];
+    }
+
+    /**
+     * @return instance as CsrGraph
+     * @throws IllegalStateException if it has too many edges for int indexed arrays
+     */
+    CsrGraph toGraph() {
+        try {
+            long E = edgeCount();
+            if (E > Integer.MAX_VALUE / 2) {
+                throw new IllegalStateException(E + " edges do not fit a CsrGraph, write() them instead");
+            }
+            int[] from = new int[(int) E], to = new int[(int) E], weight = new int[(int) E];
+            int[] i = new int[1];
+            generate((u, v, w) -> {
+                from[i[0]] = u;
+                to[i[0]] = v;
+                weight[i[0]++] = w;
+            });
+            CsrGraph g = new CsrGraph(V, W, from, to, weight);
+            g.setDemands(demands());
+            return g;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // visitor above does no I/O
+        }
+    }
+
+    /**
+     * EUCLIDEAN takes its candidates from the nearest neighbours of PointInstance,
+     * the complete graph is not generated
+     *
+     * @param k edges kept per vertex at first
+     * @return candidate lists of the instance, edges are generated again whenever they widen
+     */
+    CandidateGraph candidates(int k) {
+        if (kind == Kind.EUCLIDEAN) {
+            return toPoints().candidates(k);
+        }
+        return new CandidateGraph(V, 0, W, demands(), (kept, visit) -> generate(visit), k);
+    }
+
+    /**
+     * @return coordinates of the instance, costs as generated for EUCLIDEAN
+     * @throws IllegalStateException if the instance has no coordinates
+     */
+    PointInstance toPoints() {
+        if (kind != Kind.EUCLIDEAN && kind != Kind.GEOMETRIC) {
+            throw new IllegalStateException(kind + " instances have no coordinates");
+        }
+        points();
+        PointInstance p = new PointInstance(x, y, 0, W, scale);
+        p.setDemands(demands());
+        return p;
+    }
+
+    /**
+     * streams the instance in "V E W (u v w)* [demands d0 .. d(V-1)]" text format
+     *
+     * @param out destination
+     */
+    void write(Writer out) throws IOException {
+        Writer w = out instanceof BufferedWriter ? out : new BufferedWriter(out, 1 << 16);
+        w.write(V + " " + edgeCount() + " " + W + "\n");
+        generate((u, v, c) -> {
+            w.write(Integer.toString(u));
+            w.write(' ');
+            w.write(Integer.toString(v));
+            w.write(' ');
+            w.write(Integer.toString(c));
+            w.write('\n');
+        });
+        int[] demand = demands();
+        if (demand != null) {
+            w.write("demands");
+            for (int d : demand) {
+                w.write(' ');
+                w.write(Integer.toString(d));
+            }
+            w.write('\n');
+        }
+        w.flush();
+    }
+
+    /**
+     * generates every edge, same order on every call
+     *
+     * @param visit receives edges
+     */
+    void generate(EdgeVisitor visit) throws IOException {
+        points();
+        SplittableRandom rnd = new SplittableRandom(seed ^ 0x9E3779B97F4A7C15L);
+        switch (kind) {
+            case EUCLIDEAN:
+                for (int u = 0; u < V; u++) {
+                    for (int v = u + 1; v < V; v++) {
+                        visit.edge(u, v, cost(u, v));
+                    }
+                }
+                break;
+            case COMPLETE:
+                for (int u = 0; u < V; u++) {
+                    for (int v = u + 1; v < V; v++) {
+                        visit.edge(u, v, 1 + rnd.nextInt(scale));
+                    }
+                }
+                break;
+            case RANDOM:
+                for (int v = 1; v < V; v++) {
+                    visit.edge(0, v, 1 + rnd.nextInt(scale));
+                }
+                // skip ahead geometrically, O(E) instead of O(V^2)
+                double logQ = p < 1 ? Math.log(1 - p) : 0;
+                for (int u = 1; u < V && p > 0; u++) {
+                    long v = u;
+                    while (true) {
+                        v += p >= 1 ? 1 : 1 + (long) (Math.log(1 - rnd.nextDouble()) / logQ);
+                        if (v >= V) {
+                            break;
+                        }
+                        visit.edge(u, (int) v, 1 + rnd.nextInt(scale));
+                    }
+                }
+                break;
+            case GEOMETRIC:
+                for (int v = 1; v < V; v++) {
+                    visit.edge(0, v, cost(0, v));
+                }
+                geometric(visit);
+                break;
+        }
+    }
+
+    /**
+     * joins terminals within radius, candidates come from the 3 x 3 block of grid cells
+     */
+    private void geometric(EdgeVisitor visit) throws IOException {
+        // cells at least radius wide, but not many more cells than terminals
+        int cells = (int) Math.max(1, Math.min(Math.floor(1 / radius), Math.sqrt(V)));
+        int[] start = new int[cells * cells + 1];
+        int[] cellOf = new int[V];
+        for (int u = 1; u < V; u++) {
+            cellOf[u] = cell(x[u], cells) * cells + cell(y[u], cells);
+            start[cellOf[u] + 1]++;
+        }
+        for (int c = 0; c < cells * cells; c++) {
+            start[c + 1] += start[c];
+        }
+        int[] members = new int[V - 1];
+        int[] next = Arrays.copyOf(start, cells * cells);
+        for (int u = 1; u < V; u++) {
+            members[next[cellOf[u]]++] = u;
+        }
+        double r2 = radius * radius;
+        for (int u = 1; u < V; u++) {
+            int cx = cellOf[u] / cells, cy = cellOf[u] % cells;
+            for (int i = Math.max(0, cx - 1); i <= Math.min(cells - 1, cx + 1); i++) {
+                for (int j = Math.max(0, cy - 1); j <= Math.min(cells - 1, cy + 1); j++) {
+                    int c = i * cells + j;
+                    for (int k = start[c]; k < start[c + 1]; k++) {
+                        int v = members[k];
+                        if (v > u && distance2(u, v) <= r2) {
+                            visit.edge(u, v, cost(u, v));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int cell(double coordinate, int cells) {
+        return Math.min(cells - 1, (int) ((coordinate + 0.5) * cells));
+    }
+
+    /**
+     * draws the coordinates once, root at center
+     */
+    private void points() {
+        if (x != null) {
+            return;
+        }
+        SplittableRandom rnd = new SplittableRandom(seed);
+        x = new double[V];
+        y = new double[V];
+        for (int u = 1; u < V; u++) {
+            x[u] = rnd.nextDouble() - 0.5;
+            y[u] = rnd.nextDouble() - 0.5;
+        }
+    }
+
+    private double distance2(int u, int v) {
+        double dx = x[u] - x[v], dy = y[u] - y[v];
+        return dx * dx + dy * dy;
+    }
+
+    private int cost(int u, int v) {
+        return 1 + (int) (scale * Math.sqrt(distance2(u, v)));
+    }
+
+    /**
+     * Driver Code: writes an instance as text to stdout, or as binary file
+     */
+    public static void main(String[] args) throws IOException {
+        Kind kind = Kind.valueOf(args[0].toUpperCase());
+        int V = Integer.parseInt(args[1]);
+        int W = Integer.parseInt(args[2]);
+        long seed = Long.parseLong(args[3]);
+        InstanceGenerator gen = new InstanceGenerator(kind, V, W, seed);
+        int i = 4;
+        if (args.length > i && !args[i].startsWith("-")) {
+            double parameter = Double.parseDouble(args[i++]);
+            if (kind == Kind.GEOMETRIC) {
+                gen.radius(parameter);
+            } else {
+                gen.probability(parameter);
+            }
+        }
+        if (args.length > i + 1 && args[i].equals("-demand")) {
+            gen.demand(Integer.parseInt(args[i + 1]));
+            i += 2;
+        }
+        if (args.length > i + 1 && args[i].equals("-bin")) {
+            BinaryInstance.write(gen.toGraph(), Paths.get(args[i + 1]), false);
+        } else {
+            gen.write(new OutputStreamWriter(System.out));
+        }
+    }
+}
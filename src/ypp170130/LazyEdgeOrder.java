@@ -0,0 +1,130 @@
+package ypp170130;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * Filter-Kruskal order of packed edge keys, for the lazy mode of modified kruskal's.
+ * <p>
+ * Keys are packed as in Graph.getEdgeArray(), weight high and label low, so they are distinct.
+ * Instead of sorting all of them up front, the keys are partitioned around random pivots:
+ * the light part is ordered first, heavier parts wait on a stack. When a part is reached,
+ * edges the predicate no longer wants are dropped before it is partitioned further, and
+ * only parts of at most BASE keys are sorted. Kruskal's stops after V - 1 accepted edges,
+ * so heavy edges it never reaches are never ordered.
+ * <p>
+ * Dropping is safe for the capacitated union find: a rejected edge stays rejected, since
+ * clusters only grow and links to root are never removed. The keys that are returned
+ * come out in the same order as from a full sort, minus the dropped ones.
+ */
+class LazyEdgeOrder {
+
+    private static final int BASE = 1 << 10; // parts up to this size are sorted directly
+
+    private final long[] keys;
+    private final IntPredicate wanted; // false for labels of edges that can be dropped
+    private final SplittableRandom rnd = new SplittableRandom(0x5DEECE66DL); // fixed seed, same order each run
+    private int[] stack = new int[64]; // pending parts as (lo, hi) pairs, lightest on top
+    private int top; // number of ints in stack
+    private int pos, end; // keys[pos .. end-1] are sorted and not yet returned
+
+    /**
+     * Constructor
+     *
+     * @param keys   packed edge keys, reordered in place
+     * @param wanted tells by edge label if an edge is still worth examining
+     */
+    LazyEdgeOrder(long[] keys, IntPredicate wanted) {
+        this.keys = keys;
+        this.wanted = wanted;
+        push(0, keys.length);
+    }
+
+    /**
+     * @return true if another edge is left
+     */
+    boolean hasNext() {
+        while (pos == end) {
+            if (top == 0) {
+                return false;
+            }
+            int hi = stack[--top];
+            int lo = stack[--top];
+            hi = filter(lo, hi);
+            if (hi - lo <= BASE) {
+                Arrays.sort(keys, lo, hi);
+                pos = lo;
+                end = hi;
+            } else {
+                // lightest part goes on top, the pivot alone between both parts
+                int p = partition(lo, hi);
+                push(p + 1, hi);
+                push(p, p + 1);
+                push(lo, p);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return key of next lightest edge that was not dropped
+     */
+    long next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return keys[pos++];
+    }
+
+    /**
+     * moves wanted keys of keys[lo .. hi-1] to the front
+     *
+     * @return end of wanted keys
+     */
+    private int filter(int lo, int hi) {
+        int j = lo;
+        for (int i = lo; i < hi; i++) {
+            if (wanted.test((int) keys[i])) {
+                keys[j++] = keys[i];
+            }
+        }
+        return j;
+    }
+
+    /**
+     * lomuto partition of keys[lo .. hi-1] around a random pivot
+     *
+     * @return final index of pivot, smaller keys before it, larger after it
+     */
+    private int partition(int lo, int hi) {
+        swap(lo + rnd.nextInt(hi - lo), hi - 1);
+        long pivot = keys[hi - 1];
+        int i = lo;
+        for (int j = lo; j < hi - 1; j++) {
+            if (keys[j] < pivot) {
+                swap(i++, j);
+            }
+        }
+        swap(i, hi - 1);
+        return i;
+    }
+
+    private void swap(int i, int j) {
+        long t = keys[i];
+        keys[i] = keys[j];
+        keys[j] = t;
+    }
+
+    private void push(int lo, int hi) {
+        if (lo >= hi) {
+            return;
+        }
+        if (top + 2 > stack.length) {
+            stack = Arrays.copyOf(stack, 2 * stack.length);
+        }
+        stack[top++] = lo;
+        stack[top++] = hi;
+    }
+}
@@ -0,0 +1,488 @@
+package ypp170130;
+
+import java.util.Arrays;
+
+/**
+ * Improvement stage for a feasible cmst: vertex moves and swaps between subtrees of the root.
+ * <p>
+ * The tree is split into groups, the vertex sets of the subtrees of the root. A group is
+ * spanned together with the root by a minimum spanning tree of the edges among its vertices
+ * and the root; if that tree uses several root edges, the group just forms several subtrees,
+ * each within the capacity. Every group keeps its load, its cost and the sorted keys of its
+ * edges (packed as in Graph.getEdgeArray()). A move takes a vertex to another group or to a
+ * group of its own, a swap exchanges two vertices of different groups. Its delta is computed
+ * from the cached costs and the two changed groups only, each by one kruskal's pass over the
+ * cached edges of the group merged with the edges of the vertex that enters.
+ * <p>
+ * Candidates of a vertex are the groups of its cheapest neighbours. The first improving move
+ * is applied, passes over all vertices repeat until one improves nothing or the time budget
+ * runs out. Memory is O(V + E) plus the edges within groups, at most about V * W / 2.
+ */
+class LocalSearch {
+
+    private static final long INFEASIBLE = Long.MAX_VALUE; // cost of a group not connected to root
+    private static final int CANDIDATES = 8; // neighbours whose groups are tried for a vertex
+
+    private final CsrGraph g;
+    private final int root;
+    private final int[] demand; // null if every demand is 1
+
+    // groups, indexed by group id
+    private final int[] group; // group of each vertex, -1 for root
+    private final int[] head; // some vertex of the group, -1 if empty
+    private final int[] next, prev; // circular lists of vertices in a group
+    private final int[] count; // number of vertices
+    private final int[] load; // total demand
+    private final long[] cost; // weight of spanning tree of group and root
+    private final long[][] edges; // sorted keys of edges among group and root
+    private final int[] edgeCount;
+    private final int[] free; // stack of ids of empty groups
+    private int freeCount;
+
+    // scratch space of kruskal's passes
+    private final int[] parent;
+    private final int[] stamp;
+    private int currentStamp;
+    private long[] extra = new long[16]; // edges of an entering vertex
+    private long[] spare = new long[16]; // merged edge list of an applied move
+
+    private long moves; // improving moves applied
+    private int changedA, changedB; // groups changed by the last move
+
+    /**
+     * Constructor: groups follow the given tree
+     *
+     * @param g    graph, rows get sorted
+     * @param tree labels of edges of a feasible spanning tree
+     * @param n    number of edges in tree
+     */
+    LocalSearch(CsrGraph g, int[] tree, int n) {
+        this.g = g;
+        g.sortAdjacency();
+        int V = g.V();
+        root = g.root;
+        demand = g.demands();
+        group = new int[V];
+        head = new int[V];
+        next = new int[V];
+        prev = new int[V];
+        count = new int[V];
+        load = new int[V];
+        cost = new long[V];
+        edges = new long[V][];
+        edgeCount = new int[V];
+        free = new int[V];
+        parent = new int[V];
+        stamp = new int[V];
+        Arrays.fill(group, -1);
+        Arrays.fill(head, -1);
+        // vertex sets of subtrees of root are the components of the tree without root
+        int[] adjStart = new int[V + 1];
+        int[] adj = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            adjStart[g.from[tree[i]] + 1]++;
+            adjStart[g.to[tree[i]] + 1]++;
+        }
+        for (int u = 0; u < V; u++) {
+            adjStart[u + 1] += adjStart[u];
+        }
+        int[] fill = Arrays.copyOf(adjStart, V);
+        for (int i = 0; i < n; i++) {
+            int u = g.from[tree[i]], v = g.to[tree[i]];
+            adj[fill[u]++] = v;
+            adj[fill[v]++] = u;
+        }
+        int groups = 0;
+        int[] stack = new int[V];
+        for (int s = 0; s < V; s++) {
+            if (s == root || group[s] >= 0) continue;
+            int id = groups++;
+            int top = 0;
+            stack[top++] = s;
+            group[s] = id;
+            while (top > 0) {
+                int u = stack[--top];
+                link(id, u);
+                for (int i = adjStart[u]; i < adjStart[u + 1]; i++) {
+                    int v = adj[i];
+                    if (v != root && group[v] < 0) {
+                        group[v] = id;
+                        stack[top++] = v;
+                    }
+                }
+            }
+        }
+        for (int id = V - 1; id >= groups; id--) {
+            free[freeCount++] = id;
+        }
+        for (int id = 0; id < groups; id++) {
+            edges[id] = collect(id);
+            cost[id] = kruskal(edges[id], edgeCount[id], -1, count[id], extra, 0);
+        }
+    }
+
+    private int demand(int u) {
+        return demand == null ? 1 : demand[u];
+    }
+
+    /**
+     * adds u to the list and load of group id, group[u] is set by the caller
+     */
+    private void link(int id, int u) {
+        if (head[id] < 0) {
+            head[id] = u;
+            next[u] = prev[u] = u;
+        } else {
+            int h = head[id];
+            next[u] = h;
+            prev[u] = prev[h];
+            next[prev[h]] = u;
+            prev[h] = u;
+        }
+        count[id]++;
+        load[id] += demand(u);
+    }
+
+    private void unlink(int id, int u) {
+        if (next[u] == u) {
+            head[id] = -1;
+        } else {
+            next[prev[u]] = next[u];
+            prev[next[u]] = prev[u];
+            if (head[id] == u) {
+                head[id] = next[u];
+            }
+        }
+        count[id]--;
+        load[id] -= demand(u);
+    }
+
+    /**
+     * @return sorted keys of edges among the vertices of a group and root
+     */
+    private long[] collect(int id) {
+        long[] list = new long[16];
+        int n = 0;
+        int u = head[id];
+        do {
+            for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+                int t = g.targets[i];
+                if (t == root || (group[t] == id && u < t)) {
+                    if (n == list.length) {
+                        list = Arrays.copyOf(list, 2 * n);
+                    }
+                    list[n++] = ((long) g.weights[i] << 32) | g.edgeIds[i];
+                }
+            }
+            u = next[u];
+        } while (u != head[id]);
+        Arrays.sort(list, 0, n);
+        edgeCount[id] = n;
+        return list;
+    }
+
+    /**
+     * sorted keys of the edges from u to the vertices of a group, leaving one out, and root
+     * into extra
+     *
+     * @return number of edges
+     */
+    private int edgesTo(int u, int id, int leaving) {
+        int n = 0;
+        // rows are sorted by weight, ties by label, so keys come out sorted
+        for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+            int t = g.targets[i];
+            if (t == root || (t != leaving && group[t] == id)) {
+                if (n == extra.length) {
+                    extra = Arrays.copyOf(extra, 2 * n);
+                }
+                extra[n++] = ((long) g.weights[i] << 32) | g.edgeIds[i];
+            }
+        }
+        return n;
+    }
+
+    private int find(int u) {
+        // parents of earlier passes are stale, a vertex not seen in this pass is a root
+        if (stamp[u] != currentStamp) {
+            stamp[u] = currentStamp;
+            parent[u] = u;
+            return u;
+        }
+        while (parent[u] != u) {
+            parent[u] = parent[parent[u]];
+            u = parent[u];
+        }
+        return u;
+    }
+
+    /**
+     * kruskal's over the edges of a group without the edges of vertex skip, merged with
+     * the edges of an entering vertex
+     *
+     * @param list     sorted edges of group
+     * @param n        number of edges in list
+     * @param skip     vertex leaving the group, -1 for none
+     * @param vertices number of vertices of group after the change
+     * @param add      sorted edges of entering vertex
+     * @param m        number of edges in add
+     * @return weight of spanning tree, INFEASIBLE if the group does not reach root
+     */
+    private long kruskal(long[] list, int n, int skip, int vertices, long[] add, int m) {
+        currentStamp++;
+        long weight = 0;
+        int joined = 0;
+        for (int i = 0, j = 0; i < n || j < m; ) {
+            long key;
+            if (j == m || (i < n && list[i] < add[j])) {
+                key = list[i++];
+            } else {
+                key = add[j++];
+            }
+            int e = (int) key;
+            int u = g.from[e], v = g.to[e];
+            if (u == skip || v == skip) {
+                continue;
+            }
+            int ru = find(u), rv = find(v);
+            if (ru != rv) {
+                parent[ru] = rv;
+                weight += key >> 32;
+                joined++;
+            }
+        }
+        // group and root have vertices + 1 vertices
+        return joined == vertices ? weight : INFEASIBLE;
+    }
+
+    /**
+     * cost of group id after u leaves and v enters
+     *
+     * @param u vertex leaving, -1 for none
+     * @param v vertex entering, -1 for none
+     * @param n number of vertices of group after the change
+     */
+    private long costAfter(int id, int u, int v, int n) {
+        if (n == 0) {
+            return 0;
+        }
+        int m = 0;
+        if (v >= 0) {
+            m = edgesTo(v, id, u);
+        }
+        if (id < 0) {
+            // new group of v alone, its cheapest edge to root
+            return m > 0 ? extra[0] >> 32 : INFEASIBLE;
+        }
+        return kruskal(edges[id], edgeCount[id], u, n, extra, m);
+    }
+
+    /**
+     * improves the tree until no move improves it or time runs out
+     *
+     * @param deadline value of System.nanoTime() to stop at
+     * @return number of improving moves applied
+     */
+    long run(long deadline) {
+        int V = g.V();
+        boolean improved = true;
+        while (improved && System.nanoTime() < deadline) {
+            improved = false;
+            for (int u = 0; u < V && System.nanoTime() < deadline; u++) {
+                if (u == root) continue;
+                if (improve(u)) {
+                    improved = true;
+                }
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * takes new weights of edges into account, rows of g are updated already
+     * Groups holding a changed edge get their edge list and cost recomputed.
+     *
+     * @param changed labels of edges whose weight changed
+     * @param n       number of labels
+     * @param work    receives the vertices of groups touched by a changed edge
+     */
+    void reweighted(int[] changed, int n, DirtySet work) {
+        DirtySet groups = new DirtySet(g.V());
+        for (int i = 0; i < n; i++) {
+            int e = changed[i];
+            int u = g.from[e], v = g.to[e];
+            if (u != root) groups.add(group[u]);
+            if (v != root) groups.add(group[v]);
+        }
+        while (!groups.isEmpty()) {
+            int id = groups.remove();
+            edges[id] = collect(id);
+            cost[id] = kruskal(edges[id], edgeCount[id], -1, count[id], extra, 0);
+            addMembers(id, work);
+        }
+    }
+
+    /**
+     * improves the tree starting from some vertices, only the vertices of groups
+     * changed by a move are looked at again
+     *
+     * @param work     vertices to look at, empty on return unless time ran out
+     * @param deadline value of System.nanoTime() to stop at
+     * @return number of improving moves applied so far
+     */
+    long repair(DirtySet work, long deadline) {
+        while (!work.isEmpty() && System.nanoTime() < deadline) {
+            int u = work.remove();
+            if (improve(u)) {
+                addMembers(changedA, work);
+                addMembers(changedB, work);
+            }
+        }
+        return moves;
+    }
+
+    private void addMembers(int id, DirtySet work) {
+        int u = head[id];
+        if (u < 0) {
+            return;
+        }
+        do {
+            work.add(u);
+            u = next[u];
+        } while (u != head[id]);
+    }
+
+    /**
+     * tries the moves of vertex u, applies the first improving one
+     */
+    private boolean improve(int u) {
+        int a = group[u];
+        // cost of group of u without u
+        long without = costAfter(a, u, -1, count[a] - 1);
+        // u moves to a group of its own
+        if (count[a] > 1 && freeCount > 0 && without != INFEASIBLE) {
+            long alone = costAfter(-1, -1, u, 1);
+            if (alone != INFEASIBLE && without + alone < cost[a]) {
+                apply(u, a, free[--freeCount], -1, without, alone);
+                return true;
+            }
+        }
+        // u moves to the group of a cheap neighbour, or swaps with it
+        int end = Math.min(g.offsets[u + 1], g.offsets[u] + CANDIDATES);
+        for (int i = g.offsets[u]; i < end; i++) {
+            int v = g.targets[i];
+            if (v == root || group[v] == a) continue;
+            int b = group[v];
+            if (without != INFEASIBLE && load[b] + demand(u) <= g.W) {
+                long with = costAfter(b, -1, u, count[b] + 1);
+                if (with != INFEASIBLE && without + with < cost[a] + cost[b]) {
+                    apply(u, a, b, -1, without, with);
+                    return true;
+                }
+            }
+            if (load[a] - demand(u) + demand(v) <= g.W && load[b] - demand(v) + demand(u) <= g.W) {
+                long costA = costAfter(a, u, v, count[a]);
+                long costB = costAfter(b, v, u, count[b]);
+                if (costA != INFEASIBLE && costB != INFEASIBLE && costA + costB < cost[a] + cost[b]) {
+                    apply(u, a, b, v, costA, costB);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * moves u from group a to group b, and v from b to a if v >= 0
+     */
+    private void apply(int u, int a, int b, int v, long costA, long costB) {
+        unlink(a, u);
+        if (v >= 0) {
+            unlink(b, v);
+        }
+        // edge lists of both groups, then membership
+        replaceEdges(a, u, v);
+        replaceEdges(b, v, u);
+        group[u] = b;
+        link(b, u);
+        if (v >= 0) {
+            group[v] = a;
+            link(a, v);
+        }
+        cost[a] = costA;
+        cost[b] = costB;
+        if (head[a] < 0) {
+            edges[a] = null;
+            edgeCount[a] = 0;
+            free[freeCount++] = a;
+        }
+        changedA = a;
+        changedB = b;
+        moves++;
+    }
+
+    /**
+     * edges of group id after vertex leaving leaves and entering enters, membership unchanged yet
+     */
+    private void replaceEdges(int id, int leaving, int entering) {
+        // a new group has no edges yet
+        long[] list = edges[id] == null ? new long[0] : edges[id];
+        int n = edgeCount[id];
+        int m = entering >= 0 ? edgesTo(entering, id, leaving) : 0;
+        if (spare.length < n + m) {
+            spare = new long[n + m];
+        }
+        int k = 0;
+        for (int i = 0, j = 0; i < n || j < m; ) {
+            long key = j == m || (i < n && list[i] < extra[j]) ? list[i++] : extra[j++];
+            int e = (int) key;
+            if (leaving >= 0 && (g.from[e] == leaving || g.to[e] == leaving)) {
+                continue;
+            }
+            spare[k++] = key;
+        }
+        edges[id] = Arrays.copyOf(spare, k);
+        edgeCount[id] = k;
+    }
+
+    /**
+     * @return labels of edges of the improved tree, spanning trees of all groups
+     */
+    int[] tree() {
+        int[] tree = new int[Math.max(g.V() - 1, 0)];
+        int n = 0;
+        for (int id = 0; id < g.V(); id++) {
+            if (head[id] < 0) continue;
+            currentStamp++;
+            for (int i = 0; i < edgeCount[id]; i++) {
+                int e = (int) edges[id][i];
+                int ru = find(g.from[e]), rv = find(g.to[e]);
+                if (ru != rv) {
+                    parent[ru] = rv;
+                    tree[n++] = e;
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * @return weight of the improved tree
+     */
+    long weight() {
+        long weight = 0;
+        for (int id = 0; id < g.V(); id++) {
+            if (head[id] >= 0) {
+                weight += cost[id];
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * @return number of improving moves applied
+     */
+    long moves() {
+        return moves;
+    }
+}
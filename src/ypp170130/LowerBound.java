@@ -0,0 +1,362 @@
+package ypp170130;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Lower bound on the weight of a cmst, to tell how far a heuristic tree is from optimal.
+ * <p>
+ * A feasible tree has at least K = ceil(total demand / W) edges at the root. That constraint
+ * is relaxed with a multiplier lambda: every root edge costs lambda less, and
+ * L(lambda) = MST - lambda * (degree - K) is a lower bound for any lambda >= 0. L is concave
+ * and its breakpoints are integers, so the best lambda is the smallest one whose MST reaches
+ * degree K, found by bisection. The MST core is kruskal's over the sorted edge keys of the
+ * graph, split once into root and other edges. Lowering the root edges keeps their order, so
+ * each MST merges the two lists without sorting again.
+ * <p>
+ * Up to EXACT vertices, a best-first branch and bound closes the gap. Its nodes force and
+ * forbid edges, and each node is bounded by L. A relaxed tree with a subtree heavier than W
+ * branches on the edges of that subtree, one of which a feasible tree must leave out. A feasible
+ * relaxed tree heavier than its bound branches on one of its free edges, a root edge if it can.
+ * Finishing the search proves the optimum, otherwise the least bound of the open nodes holds.
+ * Everything stops at the deadline with the best bound found so far.
+ */
+class LowerBound {
+
+    static final int EXACT = 50; // largest number of vertices solved by branch and bound
+    private static final int OPEN = 1 << 17; // most open nodes of the search
+    private static final long NONE = Long.MAX_VALUE; // bound of a node without feasible tree
+
+    /**
+     * node of the search, edges forced into and forbidden from its trees
+     */
+    private static final class Node {
+        final long bound;
+        final BitSet forced, forbidden;
+
+        Node(long bound, BitSet forced, BitSet forbidden) {
+            this.bound = bound;
+            this.forced = forced;
+            this.forbidden = forbidden;
+        }
+    }
+
+    private final CsrGraph g;
+    private final int V, root, K;
+    private final int[] rootOrder, otherOrder; // labels of root and other edges, by key
+    private final int maxLambda; // lowers every root edge below every other edge
+    private final CapacitatedDisjointSet dsu; // plain union find, capacity never binds
+    private final CapacitatedDisjointSet clusters; // forced edges under capacity W
+    private final int[] tree; // edges of the last relaxed tree
+    private int size, degree; // its edges and edges at root
+    private long weight; // its true weight
+    private boolean exact; // true if the last solve() proved the optimum
+
+    /**
+     * Constructor: splits the sorted edge keys of g into root and other edges
+     *
+     * @param g graph, its edge order is sorted if it is not yet
+     */
+    LowerBound(CsrGraph g) {
+        this.g = g;
+        V = g.V();
+        root = g.root;
+        int[] demand = g.demands();
+        long total = 0;
+        for (int u = 0; u < V; u++) {
+            if (u != root) {
+                total += demand == null ? 1 : demand[u];
+            }
+        }
+        K = (int) Math.min(V - 1, (total + g.W - 1) / g.W);
+        long[] keys = g.sortedEdgeKeys();
+        int roots = 0;
+        for (long key : keys) {
+            int e = (int) key;
+            if (g.from[e] == root || g.to[e] == root) {
+                roots++;
+            }
+        }
+        rootOrder = new int[roots];
+        otherOrder = new int[keys.length - roots];
+        int r = 0, o = 0;
+        for (long key : keys) {
+            int e = (int) key;
+            if (g.from[e] == root || g.to[e] == root) {
+                rootOrder[r++] = e;
+            } else {
+                otherOrder[o++] = e;
+            }
+        }
+        long spread = keys.length == 0 ? 0 : (long) g.weight[(int) keys[keys.length - 1]] - g.weight[(int) keys[0]];
+        maxLambda = (int) Math.min(Integer.MAX_VALUE / 2, spread + 1);
+        dsu = new CapacitatedDisjointSet(V, root, (int) Math.min(Integer.MAX_VALUE, total), demand);
+        clusters = new CapacitatedDisjointSet(V, root, g.W, demand);
+        tree = new int[Math.max(V - 1, 0)];
+    }
+
+    /**
+     * @return least number of root edges of a feasible tree
+     */
+    int rootDegree() {
+        return K;
+    }
+
+    /**
+     * @return true if the last solve() found the optimum, its bound is then the optimal weight
+     */
+    boolean exact() {
+        return exact;
+    }
+
+    /**
+     * lower bound within a deadline, by branch and bound if there are at most EXACT vertices
+     *
+     * @param incumbent weight of a feasible tree, Long.MAX_VALUE if none is known
+     * @param deadline  System.nanoTime() to stop at
+     * @return lower bound, Long.MAX_VALUE if no spanning tree has K root edges
+     */
+    long solve(long incumbent, long deadline) {
+        exact = false;
+        BitSet none = new BitSet();
+        long bound = lagrangian(none, none, deadline);
+        if (bound == NONE || V > EXACT) {
+            return bound;
+        }
+        long best = incumbent;
+        PriorityQueue<Node> open = new PriorityQueue<>(Comparator.comparingLong((Node n) -> n.bound));
+        open.add(new Node(bound, none, none));
+        while (!open.isEmpty() && open.size() < OPEN && System.nanoTime() < deadline) {
+            Node node = open.poll();
+            if (node.bound >= best) {
+                open.clear(); // every other node is bounded at least as high
+                break;
+            }
+            long b = lagrangian(node.forced, node.forbidden, deadline);
+            if (b >= best) continue;
+            if (heavy(node, open, best)) continue;
+            // relaxed tree is feasible
+            best = Math.min(best, weight);
+            if (weight > b) {
+                branchOnFreeEdge(node, open, best);
+            }
+        }
+        if (open.isEmpty()) {
+            exact = true;
+            return best;
+        }
+        return Math.max(bound, Math.min(best, open.peek().bound));
+    }
+
+    /**
+     * branches on a subtree of the relaxed tree heavier than W, if there is one
+     * child i forbids its i-th free edge and forces the ones before
+     *
+     * @return false if the relaxed tree is feasible
+     */
+    private boolean heavy(Node node, PriorityQueue<Node> open, long best) {
+        int[] subtree = heavySubtree(node.forced);
+        if (subtree == null) {
+            return false;
+        }
+        BitSet forced = (BitSet) node.forced.clone();
+        for (int e : subtree) {
+            BitSet forbidden = (BitSet) node.forbidden.clone();
+            forbidden.set(e);
+            push(open, forced, forbidden, best);
+            forced = (BitSet) forced.clone();
+            forced.set(e);
+        }
+        return true;
+    }
+
+    /**
+     * branches on a free edge of a feasible relaxed tree heavier than its bound, a root edge
+     * if there is one, as the root degree is what the bound relaxes
+     */
+    private void branchOnFreeEdge(Node node, PriorityQueue<Node> open, long best) {
+        int pick = -1;
+        for (int i = 0; i < size; i++) {
+            int e = tree[i];
+            if (node.forced.get(e)) continue;
+            if (g.from[e] == root || g.to[e] == root) {
+                pick = e;
+                break;
+            }
+            if (pick < 0) {
+                pick = e;
+            }
+        }
+        if (pick < 0) {
+            return; // every edge is forced, the tree is the only one of the node
+        }
+        BitSet forbidden = (BitSet) node.forbidden.clone();
+        forbidden.set(pick);
+        BitSet forced = (BitSet) node.forced.clone();
+        forced.set(pick);
+        push(open, node.forced, forbidden, best);
+        push(open, forced, node.forbidden, best);
+    }
+
+    /**
+     * bounds a child and queues it unless it cannot beat best
+     */
+    private void push(PriorityQueue<Node> open, BitSet forced, BitSet forbidden, long best) {
+        if (!joinable(forced)) {
+            return;
+        }
+        long b = lagrangian(forced, forbidden, Long.MAX_VALUE);
+        if (b < best) {
+            open.add(new Node(b, forced, forbidden));
+        }
+    }
+
+    /**
+     * @return false if the forced edges close a cycle or a cluster heavier than W
+     */
+    private boolean joinable(BitSet forced) {
+        clusters.reset(g.W);
+        for (int e = forced.nextSetBit(0); e >= 0; e = forced.nextSetBit(e + 1)) {
+            if (!CapacitatedDisjointSet.accepted(clusters.union(g.from[e], g.to[e]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * best L(lambda) by bisection over lambda, leaves the tree of the best lambda in tree
+     *
+     * @return lower bound, NONE if no tree has K root edges
+     */
+    private long lagrangian(BitSet forced, BitSet forbidden, long deadline) {
+        if (!mst(0, forced, forbidden)) {
+            return NONE;
+        }
+        if (degree >= K) {
+            return weight;
+        }
+        long best = weight; // L(0)
+        int lo = 0, hi = maxLambda; // degree(lo) < K <= degree(hi)
+        if (!mst(hi, forced, forbidden) || degree < K) {
+            return NONE;
+        }
+        best = Math.max(best, weight - (long) hi * (degree - K));
+        while (hi - lo > 1 && System.nanoTime() < deadline) {
+            int mid = (lo + hi) >>> 1;
+            mst(mid, forced, forbidden);
+            best = Math.max(best, weight - (long) mid * (degree - K));
+            if (degree >= K) {
+                hi = mid;
+            } else {
+                lo = mid;
+            }
+        }
+        mst(hi, forced, forbidden);
+        return Math.max(best, weight - (long) hi * (degree - K));
+    }
+
+    /**
+     * kruskal's with root edges lowered by lambda, forced edges first
+     * ties go to root edges, so the degree is the largest among the trees of least cost
+     *
+     * @return false if there is no spanning tree with the forced edges
+     */
+    private boolean mst(int lambda, BitSet forced, BitSet forbidden) {
+        dsu.reset(dsu.capacity());
+        size = 0;
+        degree = 0;
+        weight = 0;
+        for (int e = forced.nextSetBit(0); e >= 0; e = forced.nextSetBit(e + 1)) {
+            if (!CapacitatedDisjointSet.accepted(dsu.union(g.from[e], g.to[e]))) {
+                return false;
+            }
+            add(e);
+        }
+        int i = 0, j = 0;
+        while (size < V - 1 && (i < rootOrder.length || j < otherOrder.length)) {
+            int e;
+            if (j == otherOrder.length
+                    || (i < rootOrder.length && (long) g.weight[rootOrder[i]] - lambda <= g.weight[otherOrder[j]])) {
+                e = rootOrder[i++];
+            } else {
+                e = otherOrder[j++];
+            }
+            if (forced.get(e) || forbidden.get(e)) continue;
+            if (CapacitatedDisjointSet.accepted(dsu.union(g.from[e], g.to[e]))) {
+                add(e);
+            }
+        }
+        return size == V - 1;
+    }
+
+    private void add(int e) {
+        tree[size++] = e;
+        weight += g.weight[e];
+        if (g.from[e] == root || g.to[e] == root) {
+            degree++;
+        }
+    }
+
+    /**
+     * finds the subtree of root in the relaxed tree heavier than W with fewest free edges
+     *
+     * @return its free edges, root edge first, null if every subtree fits
+     */
+    private int[] heavySubtree(BitSet forced) {
+        int[] start = new int[V + 1];
+        int[] adj = new int[2 * size];
+        int[] via = new int[2 * size]; // edge of each adjacency slot
+        for (int i = 0; i < size; i++) {
+            start[g.from[tree[i]] + 1]++;
+            start[g.to[tree[i]] + 1]++;
+        }
+        for (int u = 0; u < V; u++) {
+            start[u + 1] += start[u];
+        }
+        int[] fill = new int[V];
+        System.arraycopy(start, 0, fill, 0, V);
+        for (int i = 0; i < size; i++) {
+            int e = tree[i];
+            adj[fill[g.from[e]]] = g.to[e];
+            via[fill[g.from[e]]++] = e;
+            adj[fill[g.to[e]]] = g.from[e];
+            via[fill[g.to[e]]++] = e;
+        }
+        int[] demand = g.demands();
+        boolean[] seen = new boolean[V];
+        seen[root] = true;
+        int[] stack = new int[V];
+        int[] edges = new int[V]; // free edges of the current subtree
+        int[] best = null;
+        for (int s = start[root]; s < start[root + 1]; s++) {
+            int n = 0;
+            if (!forced.get(via[s])) {
+                edges[n++] = via[s];
+            }
+            int top = 0;
+            stack[top++] = adj[s];
+            seen[adj[s]] = true;
+            long load = 0;
+            while (top > 0) {
+                int u = stack[--top];
+                load += demand == null ? 1 : demand[u];
+                for (int i = start[u]; i < start[u + 1]; i++) {
+                    if (!seen[adj[i]]) {
+                        seen[adj[i]] = true;
+                        stack[top++] = adj[i];
+                        if (!forced.get(via[i])) {
+                            edges[n++] = via[i];
+                        }
+                    }
+                }
+            }
+            if (load > g.W && (best == null || n < best.length)) {
+                best = Arrays.copyOf(edges, n);
+            }
+        }
+        return best;
+    }
+}
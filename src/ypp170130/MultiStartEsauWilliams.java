@@ -0,0 +1,207 @@
+package ypp170130;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Runs esau williams several times on all cores and keeps the best tree.
+ * <p>
+ * Start 0 selects merges by the true tradeoffs, ties by index, like the deterministic
+ * heuristic, but stops before a merge of positive tradeoff instead of after it, so its tree
+ * is never heavier. Every other start adds seeded noise to the tradeoffs it compares: the cost
+ * of a candidate edge is perturbed by up to noise times itself, a fixed amount per edge and
+ * start, rounded at random, so ties and near ties break differently and the run takes
+ * another path. The tree is always weighed with true costs.
+ * <p>
+ * The sorted rows of the CsrGraph are shared and only read. A start keeps a union find, cursor
+ * into each row, heap, dirty set and list of accepted edges, all O(V). There is no edge status:
+ * an edge is skipped once its ends are in the same cluster or their clusters are too heavy
+ * to merge, both final, which covers every edge the deterministic run marks as processed.
+ * The best tree is the one of least weight, of the smallest start on ties, so the result
+ * does not depend on how the starts were scheduled.
+ */
+class MultiStartEsauWilliams {
+
+    static final double NOISE = 0.02; // default noise, fraction of the cost of an edge
+
+    /**
+     * tree found by one start
+     */
+    static final class Run {
+        final int start; // index of the start
+        final long weight; // weight of the tree
+        final int[] tree; // labels of tree edges
+        final long iterations; // iterations of the main loop
+        final long recomputed; // tradeoffs recomputed
+        final long finds; // calls of find()
+
+        Run(int start, long weight, int[] tree, long iterations, long recomputed, long finds) {
+            this.start = start;
+            this.weight = weight;
+            this.tree = tree;
+            this.iterations = iterations;
+            this.recomputed = recomputed;
+            this.finds = finds;
+        }
+    }
+
+    private final CsrGraph g;
+    private final double noise;
+    private final long seed;
+    private long iterations, recomputed, finds; // totals of all starts
+
+    /**
+     * Constructor
+     *
+     * @param g     graph, only read while starts run
+     * @param noise largest perturbation of a cost, as a fraction of it
+     * @param seed  seed of the perturbations
+     */
+    MultiStartEsauWilliams(CsrGraph g, double noise, long seed) {
+        this.g = g;
+        this.noise = noise;
+        this.seed = seed;
+    }
+
+    /**
+     * runs the starts in parallel
+     *
+     * @param starts number of runs, at least 1
+     * @return best run
+     */
+    Run solve(int starts) {
+        g.sortAdjacency(); // once, before the rows are shared
+        Run[] runs = IntStream.range(0, Math.max(1, starts)).parallel().mapToObj(this::run).toArray(Run[]::new);
+        Run best = runs[0];
+        for (Run r : runs) {
+            iterations += r.iterations;
+            recomputed += r.recomputed;
+            finds += r.finds;
+            if (r.weight < best.weight) {
+                best = r;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return iterations of all starts of the last solve()
+     */
+    long iterations() {
+        return iterations;
+    }
+
+    /**
+     * @return tradeoffs recomputed by all starts of the last solve()
+     */
+    long recomputed() {
+        return recomputed;
+    }
+
+    /**
+     * @return calls of find() by all starts of the last solve()
+     */
+    long finds() {
+        return finds;
+    }
+
+    /**
+     * one start of esau williams, same steps as WMST.solveEsauWilliams(CsrGraph)
+     */
+    private Run run(int start) {
+        int V = g.V(), root = g.root;
+        long salt = mix(seed + start * 0x9E3779B97F4A7C15L);
+        CapacitatedDisjointSet dsu = new CapacitatedDisjointSet(V, root, g.W, g.demands());
+        int[] connectingLink = new int[V]; // link of cluster to root, kept by representative
+        int[] cursor = new int[V]; // next slot in row that may still join
+        int[] tradeoffEdge = new int[V]; // -1 if no edge can join
+        int[] accepted = new int[Math.max(V - 1, 0)];
+        int n = 0;
+        long wmst = 0;
+        for (int u = 0; u < V; u++) {
+            cursor[u] = g.offsets[u];
+        }
+        for (int i = g.offsets[root]; i < g.offsets[root + 1]; i++) {
+            connectingLink[g.targets[i]] = g.edgeIds[i];
+            wmst += g.weights[i];
+        }
+
+        IndexedMinHeap heap = new IndexedMinHeap(V);
+        DirtySet dirty = new DirtySet(V);
+        for (int u = 0; u < V; u++) {
+            if (u == root) continue;
+            dirty.add(u);
+        }
+        // find() compresses paths, so tradeoffs of a start are recomputed on its own thread
+        Tradeoffs tradeoffs = new Tradeoffs(V, false);
+        Tradeoffs.Element element = (u, c2) -> {
+            int end = g.offsets[u + 1];
+            int i = cursor[u];
+            while (i < end && (g.targets[i] == root || !dsu.joinable(u, g.targets[i]))) {
+                i++;
+            }
+            cursor[u] = i;
+            if (i == end) {
+                tradeoffEdge[u] = -1;
+                return Tradeoffs.NONE;
+            }
+            int e = g.edgeIds[i];
+            tradeoffEdge[u] = e;
+            int w = g.weights[i];
+            return Tradeoffs.key(w + (start == 0 ? 0 : perturbation(salt, e, noise * w)) - c2, u);
+        };
+        IntUnaryOperator rootCost = rep -> g.weight[connectingLink[rep]];
+        long iteration = 0;
+        while (true) {
+            tradeoffs.update(dirty, dsu, rootCost, element, heap);
+            // a positive tradeoff would make the tree heavier, stop before it
+            if (heap.isEmpty() || heap.minKey() > 0) {
+                break;
+            }
+            iteration++;
+            int x = heap.peekMin();
+            int e = tradeoffEdge[x];
+            int y = g.other(e, x);
+            int repX = dsu.find(x), repY = dsu.find(y);
+            if (CapacitatedDisjointSet.accepted(dsu.union(x, y))) {
+                // selected edge replaces the link of the cluster of x
+                wmst = wmst - g.weight[connectingLink[repX]] + g.weight[e];
+                accepted[n++] = e;
+                connectingLink[dsu.find(x)] = connectingLink[repY];
+            }
+            dirty.add(dsu.find(x));
+            dirty.add(dsu.find(y));
+        }
+
+        // accepted edges, then the link of each cluster to root
+        for (int u = 0; u < V; u++) {
+            if (u != root && dsu.find(u) == u) {
+                accepted[n++] = connectingLink[u];
+            }
+        }
+        int[] tree = Arrays.copyOf(accepted, n);
+        Arrays.sort(tree);
+        return new Run(start, wmst, tree, iteration, tradeoffs.recomputed(), dsu.finds());
+    }
+
+    /**
+     * uniform in -range .. range, fixed by salt and e, rounded up or down at random so that
+     * small costs are perturbed too, and equal tradeoffs are not always ties
+     */
+    private static int perturbation(long salt, int e, double range) {
+        long h = mix(salt ^ e);
+        double offset = range * ((h >>> 11) * 0x1.0p-52 - 1); // high 53 bits
+        double coin = (h & 0x7FF) * 0x1.0p-11; // low 11 bits
+        return (int) Math.floor(offset + coin);
+    }
+
+    /**
+     * @return 64 bit finalizer of SplittableRandom
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,322 @@
+package ypp170130;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Euclidean instance given by coordinates, edges are never stored.
+ * <p>
+ * The cost of (u, v) is computed when it is needed, as 1 + (int) (scale * distance), the same
+ * costs InstanceGenerator gives EUCLIDEAN instances. The k nearest neighbours of each terminal
+ * are found through a uniform grid over the terminals, about two per cell, searched in rings
+ * of cells around the cell of the terminal until no nearer terminal can follow. Columns and
+ * rows follow the aspect ratio of the bounding box, so cells stay about square and terminals
+ * on a line or in a narrow strip still have a few per cell.
+ * <p>
+ * candidates(k) hands both heuristics a CandidateGraph whose source streams every root edge
+ * and the pairs that are among the k nearest of either end, so time and memory stay O(k * V)
+ * and a complete graph of 10^6 terminals is never built, not even as a stream.
+ * <p>
+ * Text format, root is vertex 0: "V W (x y){V} [demands d0 .. d(V-1)]", coordinates in any
+ * form Double.parseDouble() reads, 1.5E-4 included
+ */
+class PointInstance {
+
+    private final double[] x, y; // coordinates
+    private final int V, root, W;
+    private final int scale; // cost of a unit distance
+    private int[] demand; // null if every demand is 1
+
+    /**
+     * Constructor: arrays are taken over, not copied
+     *
+     * @param x     x coordinate of each vertex
+     * @param y     y coordinate of each vertex
+     * @param root  central hub
+     * @param W     constraint
+     * @param scale cost of a unit distance
+     */
+    PointInstance(double[] x, double[] y, int root, int W, int scale) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(x.length + " x but " + y.length + " y coordinates");
+        }
+        this.x = x;
+        this.y = y;
+        this.V = x.length;
+        this.root = root;
+        this.W = W;
+        this.scale = scale;
+    }
+
+    /**
+     * To create a point instance from a file in text format
+     *
+     * @param file  instance file
+     * @param scale cost of a unit distance
+     * @return instance of PointInstance
+     * @throws IOException if the file ends early or a token is not a number
+     */
+    static PointInstance load(Path file, int scale) throws IOException {
+        try (Reader r = Files.newBufferedReader(file)) {
+            // every token is a word, numbers are parsed from it
+            StreamTokenizer in = new StreamTokenizer(r);
+            in.resetSyntax();
+            in.wordChars(' ' + 1, 255);
+            in.whitespaceChars(0, ' ');
+            int V = (int) number(in);
+            int W = (int) number(in);
+            double[] x = new double[V], y = new double[V];
+            for (int u = 0; u < V; u++) {
+                x[u] = number(in);
+                y[u] = number(in);
+            }
+            PointInstance p = new PointInstance(x, y, 0, W, scale);
+            if (in.nextToken() == StreamTokenizer.TT_WORD && in.sval.equals("demands")) {
+                int[] demand = new int[V];
+                for (int u = 0; u < V; u++) {
+                    demand[u] = (int) number(in);
+                }
+                p.setDemands(demand);
+            }
+            return p;
+        }
+    }
+
+    private static double number(StreamTokenizer in) throws IOException {
+        if (in.nextToken() != StreamTokenizer.TT_WORD) {
+            throw new IOException("number expected at line " + in.lineno());
+        }
+        try {
+            return Double.parseDouble(in.sval);
+        } catch (NumberFormatException e) {
+            throw new IOException("number expected at line " + in.lineno() + ": " + in.sval);
+        }
+    }
+
+    /**
+     * @param demand demand of each vertex, null if every demand is 1
+     */
+    void setDemands(int[] demand) {
+        this.demand = demand;
+    }
+
+    /**
+     * @return number of vertices
+     */
+    int V() {
+        return V;
+    }
+
+    /**
+     * @param u vertex on one end
+     * @param v vertex on other end
+     * @return cost of edge (u, v)
+     */
+    int cost(int u, int v) {
+        double dx = x[u] - x[v], dy = y[u] - y[v];
+        return 1 + (int) (scale * Math.sqrt(dx * dx + dy * dy));
+    }
+
+    /**
+     * @param k edges kept per vertex at first
+     * @return candidate lists, nearest neighbours are searched again whenever they widen
+     */
+    CandidateGraph candidates(int k) {
+        return new CandidateGraph(V, root, W, demand, this::edges, k);
+    }
+
+    /**
+     * streams every root edge, then each pair among the k nearest of either end once
+     */
+    private void edges(int k, InstanceGenerator.EdgeVisitor visit) throws IOException {
+        for (int v = 0; v < V; v++) {
+            if (v != root) {
+                visit.edge(root, v, cost(root, v));
+            }
+        }
+        k = Math.min(k, V - 2);
+        if (k <= 0) {
+            return;
+        }
+        int[] near = nearest(k);
+        for (int u = 0; u < V; u++) {
+            if (u == root) continue;
+            for (int i = u * k; i < u * k + k; i++) {
+                int v = near[i];
+                // (u, v) is streamed from the smaller end when both keep it
+                if (u < v || !contains(near, v * k, k, u)) {
+                    visit.edge(u, v, cost(u, v));
+                }
+            }
+        }
+    }
+
+    private static boolean contains(int[] a, int from, int n, int value) {
+        for (int i = from; i < from + n; i++) {
+            if (a[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * k nearest terminals of each terminal through a grid, ties broken by index
+     *
+     * @param k neighbours per terminal, less than the number of terminals
+     * @return neighbours of u in slots u * k .. u * k + k - 1, nearest first
+     */
+    int[] nearest(int k) {
+        if ((long) V * k > Integer.MAX_VALUE) {
+            throw new IllegalStateException(V + " * " + k + " neighbours do not fit");
+        }
+        // bounding box of the terminals, about two terminals per cell
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int u = 0; u < V; u++) {
+            if (u == root) continue;
+            minX = Math.min(minX, x[u]);
+            maxX = Math.max(maxX, x[u]);
+            minY = Math.min(minY, y[u]);
+            maxY = Math.max(maxY, y[u]);
+        }
+        // columns and rows in the ratio of width to height, a flat side gets one
+        double width = maxX - minX, height = maxY - minY;
+        double target = Math.max(1, (V - 1) / 2.0);
+        int columns, rows;
+        if (width > 0 && height > 0) {
+            columns = (int) Math.min(target, Math.max(1, Math.ceil(Math.sqrt(target * width / height))));
+            rows = (int) Math.min(target, Math.max(1, Math.ceil(target / columns)));
+        } else {
+            columns = width > 0 ? (int) Math.ceil(target) : 1;
+            rows = height > 0 ? (int) Math.ceil(target) : 1;
+        }
+        double cellW = width > 0 ? width / columns : 1;
+        double cellH = height > 0 ? height / rows : 1;
+        int cells = columns * rows;
+        int[] start = new int[cells + 1];
+        int[] cellOf = new int[V];
+        for (int u = 0; u < V; u++) {
+            if (u == root) continue;
+            int cx = Math.min(columns - 1, (int) ((x[u] - minX) / cellW));
+            int cy = Math.min(rows - 1, (int) ((y[u] - minY) / cellH));
+            cellOf[u] = cx * rows + cy;
+            start[cellOf[u] + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            start[c + 1] += start[c];
+        }
+        int[] members = new int[V - 1];
+        int[] next = Arrays.copyOf(start, cells);
+        for (int u = 0; u < V; u++) {
+            if (u != root) {
+                members[next[cellOf[u]]++] = u;
+            }
+        }
+
+        int[] near = new int[V * k];
+        double[] dist = new double[k]; // bounded max-heap of one search, farthest first
+        int[] id = new int[k];
+        // ring r + 1 is at least r * ring away, along an axis of more than one cell
+        double ring = Math.min(columns > 1 ? cellW : Double.POSITIVE_INFINITY,
+                rows > 1 ? cellH : Double.POSITIVE_INFINITY);
+        for (int u = 0; u < V; u++) {
+            if (u == root) continue;
+            int cx = cellOf[u] / rows, cy = cellOf[u] % rows;
+            int size = 0;
+            for (int r = 0; r < Math.max(columns, rows); r++) {
+                double gap = Math.max(0, r - 1) * ring;
+                if (size == k && dist[0] <= gap * gap) {
+                    break; // terminals not seen yet are at least gap away
+                }
+                for (int i = Math.max(0, cx - r); i <= Math.min(columns - 1, cx + r); i++) {
+                    // cells on the border of the ring only
+                    int step = i == cx - r || i == cx + r ? 1 : 2 * r;
+                    for (int j = cy - r; j <= cy + r; j += Math.max(1, step)) {
+                        if (j < 0 || j >= rows) continue;
+                        int c = i * rows + j;
+                        for (int m = start[c]; m < start[c + 1]; m++) {
+                            int v = members[m];
+                            if (v == u) continue;
+                            double dx = x[u] - x[v], dy = y[u] - y[v];
+                            size = offer(dist, id, size, k, dx * dx + dy * dy, v);
+                        }
+                    }
+                }
+            }
+            // pop farthest first, into the last free slot
+            while (size > 0) {
+                near[u * k + size - 1] = id[0];
+                size = pop(dist, id, size);
+            }
+        }
+        return near;
+    }
+
+    /**
+     * offers v at squared distance d to a bounded max-heap, ties keep the smaller index
+     *
+     * @return new size of the heap
+     */
+    private static int offer(double[] dist, int[] id, int size, int k, double d, int v) {
+        int i;
+        if (size < k) {
+            i = size++;
+            while (i > 0 && farther(d, v, dist[(i - 1) / 2], id[(i - 1) / 2])) {
+                int p = (i - 1) / 2;
+                dist[i] = dist[p];
+                id[i] = id[p];
+                i = p;
+            }
+        } else if (farther(dist[0], id[0], d, v)) {
+            i = sift(dist, id, size, d, v);
+        } else {
+            return size;
+        }
+        dist[i] = d;
+        id[i] = v;
+        return size;
+    }
+
+    /**
+     * removes the top of a bounded max-heap
+     *
+     * @return new size of the heap
+     */
+    private static int pop(double[] dist, int[] id, int size) {
+        size--;
+        if (size > 0) {
+            double d = dist[size];
+            int v = id[size];
+            int i = sift(dist, id, size, d, v);
+            dist[i] = d;
+            id[i] = v;
+        }
+        return size;
+    }
+
+    /**
+     * sifts a hole at the top down for (d, v)
+     *
+     * @return slot of (d, v)
+     */
+    private static int sift(double[] dist, int[] id, int size, double d, int v) {
+        int i = 0;
+        while (true) {
+            int c = 2 * i + 1;
+            if (c >= size) break;
+            if (c + 1 < size && farther(dist[c + 1], id[c + 1], dist[c], id[c])) c++;
+            if (!farther(dist[c], id[c], d, v)) break;
+            dist[i] = dist[c];
+            id[i] = id[c];
+            i = c;
+        }
+        return i;
+    }
+
+    private static boolean farther(double d1, int v1, double d2, int v2) {
+        return d1 > d2 || (d1 == d2 && v1 > v2);
+    }
+}
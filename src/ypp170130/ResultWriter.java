@@ -0,0 +1,215 @@
+package ypp170130;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * Bulk serialization of CmstResult, text and binary.
+ * <p>
+ * Text format, one edge per line as in the input format:
+ * <pre>
+ * weight w
+ * [bound b [gap g] [optimal]]
+ * edges n
+ * (u v w){n}
+ * loads l1 .. lk
+ * </pre>
+ * or the single line "infeasible". The bound line is there if a lower bound was computed, g is
+ * the gap in percent, left out if b is 0 under a heavier tree, followed by "optimal" if b is
+ * the optimal weight. Text is formatted into a char buffer that is handed to the Writer
+ * whenever it fills, so there is one write per 64K chars, not per edge.
+ * <p>
+ * Binary format, little endian:
+ * <pre>
+ * magic "CMSR", version, n, k, weight (long), lower bound (long), optimal, n quads (label, u, v, w), k loads
+ * </pre>
+ * with weight -1 and n = k = 0 for an infeasible result, lower bound -1 if none was computed
+ * and optimal 1 if it is the optimal weight, 0 otherwise. Version 1 had no lower bound and
+ * optimal, its results are read with lower bound -1.
+ */
+class ResultWriter {
+
+    private static final int MAGIC = 0x434D5352; // "CMSR"
+    private static final int VERSION = 2; // 2 added lower bound and optimal
+    private static final int BUFFER = 1 << 16;
+
+    /**
+     * writes a result in text format, out is flushed but not closed
+     *
+     * @param r   result
+     * @param out destination
+     */
+    static void writeText(CmstResult r, Writer out) throws IOException {
+        TextBuffer buf = new TextBuffer(out);
+        if (!r.feasible) {
+            buf.append("infeasible\n");
+            buf.flush();
+            return;
+        }
+        buf.append("weight ").append(r.weight).append('\n');
+        if (r.lowerBound >= 0) {
+            buf.append("bound ").append(r.lowerBound);
+            if (!Double.isNaN(r.gap())) {
+                buf.append(" gap ").append(String.format(Locale.ROOT, "%.2f", 100 * r.gap()));
+            }
+            buf.append(r.optimal ? " optimal\n" : "\n");
+        }
+        buf.append("edges ").append(r.size()).append('\n');
+        for (int i = 0; i < r.size(); i++) {
+            buf.append(r.from[i]).append(' ').append(r.to[i]).append(' ').append(r.cost[i]).append('\n');
+        }
+        buf.append("loads");
+        for (int load : r.loads()) {
+            buf.append(' ').append(load);
+        }
+        buf.append('\n');
+        buf.flush();
+    }
+
+    /**
+     * writes a result in binary format, out is flushed but not closed
+     *
+     * @param r   result
+     * @param out destination
+     */
+    static void writeBinary(CmstResult r, OutputStream out) throws IOException {
+        int[] loads = r.loads();
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(r.size()).putInt(loads.length).putLong(r.weight)
+                .putLong(r.lowerBound).putInt(r.optimal ? 1 : 0);
+        for (int i = 0; i < r.size(); i++) {
+            if (buf.remaining() < 4 * Integer.BYTES) {
+                drain(buf, out);
+            }
+            buf.putInt(r.edges[i]).putInt(r.from[i]).putInt(r.to[i]).putInt(r.cost[i]);
+        }
+        for (int load : loads) {
+            if (buf.remaining() < Integer.BYTES) {
+                drain(buf, out);
+            }
+            buf.putInt(load);
+        }
+        drain(buf, out);
+        out.flush();
+    }
+
+    private static void drain(ByteBuffer buf, OutputStream out) throws IOException {
+        out.write(buf.array(), 0, buf.position());
+        buf.clear();
+    }
+
+    /**
+     * reads a result written by writeBinary()
+     * Exactly the bytes of the result are read, so results written one after another are read
+     * back by calling this again on the same stream. Nothing is buffered here, a stream of
+     * many small results is best wrapped in a BufferedInputStream by the caller.
+     *
+     * @param in source, positioned at the start of a result
+     * @return result, loads, lower bound and optimal as stored
+     * @throws IOException if the data is not a result of version 1 or 2
+     */
+    static CmstResult readBinary(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] header = new byte[5 * Integer.BYTES + 2 * Long.BYTES];
+        data.readFully(header, 0, 2 * Integer.BYTES);
+        ByteBuffer h = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        int version = h.getInt(Integer.BYTES);
+        if (h.getInt(0) != MAGIC || version < 1 || version > VERSION) {
+            throw new IOException("not a result of version 1 to " + VERSION);
+        }
+        // version 1 ends after the weight
+        int length = version == 1 ? 2 * Integer.BYTES + Long.BYTES : header.length - 2 * Integer.BYTES;
+        data.readFully(header, 2 * Integer.BYTES, length);
+        h.position(2 * Integer.BYTES);
+        int n = h.getInt(), k = h.getInt();
+        long weight = h.getLong();
+        long lowerBound = version == 1 ? -1 : h.getLong();
+        boolean optimal = version != 1 && h.getInt() != 0;
+        byte[] body = new byte[(4 * n + k) * Integer.BYTES];
+        data.readFully(body);
+        ByteBuffer b = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+        int[] edges = new int[n], from = new int[n], to = new int[n], cost = new int[n], loads = new int[k];
+        for (int i = 0; i < n; i++) {
+            edges[i] = b.getInt();
+            from[i] = b.getInt();
+            to[i] = b.getInt();
+            cost[i] = b.getInt();
+        }
+        b.asIntBuffer().get(loads);
+        int V = n + 1; // a spanning tree has one edge less than vertices
+        CmstResult r = new CmstResult(V, 0, null, edges, from, to, cost, weight, loads);
+        r.lowerBound = lowerBound;
+        r.optimal = optimal;
+        return r;
+    }
+
+    /**
+     * char buffer in front of a Writer, ints are formatted without temporary strings
+     */
+    private static final class TextBuffer {
+        private final Writer out;
+        private final char[] chars = new char[BUFFER];
+        private int size;
+
+        TextBuffer(Writer out) {
+            this.out = out;
+        }
+
+        TextBuffer append(char c) throws IOException {
+            if (size == chars.length) {
+                drain();
+            }
+            chars[size++] = c;
+            return this;
+        }
+
+        TextBuffer append(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++) {
+                append(s.charAt(i));
+            }
+            return this;
+        }
+
+        TextBuffer append(long value) throws IOException {
+            // 20 chars hold any long with its sign
+            if (chars.length - size < 20) {
+                drain();
+            }
+            if (value < 0) {
+                if (value == Long.MIN_VALUE) {
+                    return append(Long.toString(value));
+                }
+                chars[size++] = '-';
+                value = -value;
+            }
+            int end = size + digits(value);
+            for (int i = end - 1; i >= size; i--) {
+                chars[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+            size = end;
+            return this;
+        }
+
+        private static int digits(long value) {
+            int n = 1;
+            while (value >= 10) {
+                value /= 10;
+                n++;
+            }
+            return n;
+        }
+
+        private void drain() throws IOException {
+            out.write(chars, 0, size);
+            size = 0;
+        }
+
+        void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package ypp170130;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.util.Locale;
+
+/**
+ * Counters and phase times of one run of a heuristic.
+ * <p>
+ * WMST fills a new instance on every run, getMetrics() returns the one of the last run.
+ * Counters are plain fields bumped by the solving thread, or taken from the union find and
+ * Tradeoffs once the run ends, so collecting them costs next to nothing. Each finished run
+ * is also committed as a JFR event "ypp170130.Solve", which is dropped unless a recording
+ * with that event enabled is running, e.g. java -XX:StartFlightRecording ...
+ */
+class SolverMetrics {
+
+    final Tracer.Algorithm algorithm;
+    final int vertices, edges, capacity;
+
+    long edgesExamined; // edges handed to union
+    long capacityRejections; // rejected as constraint violation
+    long connectedRejections; // rejected as already connected
+    long iterations; // esau williams iterations, 0 for kruskal's
+    long tradeoffRecomputations; // tradeoffs of elements recomputed
+    long finds; // calls of find() of the union find
+    long findSteps; // parent links followed by those calls
+    int longestFind; // most links followed by one call
+
+    // wall time of each phase
+    long sortNanos; // kruskal's edge order, or sorted rows for esau williams
+    long initNanos; // union find and starting tree
+    long loopNanos; // main loop
+    long improveNanos; // local search stage, 0 if not enabled
+    long boundNanos; // lower bound stage, 0 if not enabled
+
+    long weight = -1; // weight of the tree, -1 if infeasible
+
+    private final SolveEvent event = new SolveEvent();
+    private long mark = System.nanoTime(); // end of the last phase
+
+    /**
+     * Constructor: starts the clock of the JFR event
+     *
+     * @param algorithm heuristic being run
+     * @param g         graph being solved
+     */
+    SolverMetrics(Tracer.Algorithm algorithm, CsrGraph g) {
+        this(algorithm, g.V(), g.E(), g.W);
+    }
+
+    /**
+     * Constructor: starts the clock of the JFR event
+     *
+     * @param algorithm heuristic being run
+     * @param vertices  number of vertices
+     * @param edges     number of edges
+     * @param capacity  constraint
+     */
+    SolverMetrics(Tracer.Algorithm algorithm, int vertices, int edges, int capacity) {
+        this.algorithm = algorithm;
+        this.vertices = vertices;
+        this.edges = edges;
+        this.capacity = capacity;
+        event.begin();
+    }
+
+    /**
+     * ends a phase, the next one starts now
+     *
+     * @return wall time of the phase in nanoseconds
+     */
+    long lap() {
+        long now = System.nanoTime();
+        long elapsed = now - mark;
+        mark = now;
+        return elapsed;
+    }
+
+    /**
+     * takes the find() counters of the union find used by the run
+     */
+    void finds(CapacitatedDisjointSet dsu) {
+        finds = dsu.finds();
+        findSteps = dsu.findSteps();
+        longestFind = dsu.longestFind();
+    }
+
+    /**
+     * counts the outcome of union() on an examined edge
+     */
+    void examined(int outcome) {
+        edgesExamined++;
+        if (outcome == CapacitatedDisjointSet.CONSTRAINT_VIOLATION) {
+            capacityRejections++;
+        } else if (outcome == CapacitatedDisjointSet.ALREADY_CONNECTED) {
+            connectedRejections++;
+        }
+    }
+
+    /**
+     * @return average parent links followed per find()
+     */
+    double averageFind() {
+        return finds == 0 ? 0 : (double) findSteps / finds;
+    }
+
+    /**
+     * @return wall time of all phases
+     */
+    long totalNanos() {
+        return sortNanos + initNanos + loopNanos + improveNanos + boundNanos;
+    }
+
+    /**
+     * ends the run: records its weight and commits the JFR event if recording
+     *
+     * @param weight weight of the tree, -1 if infeasible
+     */
+    void end(long weight) {
+        this.weight = weight;
+        event.end();
+        if (event.shouldCommit()) {
+            event.algorithm = algorithm.name();
+            event.vertices = vertices;
+            event.edges = edges;
+            event.capacity = capacity;
+            event.weight = weight;
+            event.edgesExamined = edgesExamined;
+            event.capacityRejections = capacityRejections;
+            event.connectedRejections = connectedRejections;
+            event.iterations = iterations;
+            event.tradeoffRecomputations = tradeoffRecomputations;
+            event.finds = finds;
+            event.findSteps = findSteps;
+            event.longestFind = longestFind;
+            event.sortTime = sortNanos;
+            event.initTime = initNanos;
+            event.loopTime = loopNanos;
+            event.improveTime = improveNanos;
+            event.boundTime = boundNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s V=%d E=%d W=%d weight=%d examined=%d capacity-rejects=%d connected-rejects=%d"
+                        + " iterations=%d tradeoffs=%d finds=%d avg-find=%.2f max-find=%d"
+                        + " sort=%.3fms init=%.3fms loop=%.3fms improve=%.3fms bound=%.3fms",
+                algorithm, vertices, edges, capacity, weight, edgesExamined, capacityRejections, connectedRejections,
+                iterations, tradeoffRecomputations, finds, averageFind(), longestFind,
+                sortNanos / 1e6, initNanos / 1e6, loopNanos / 1e6, improveNanos / 1e6, boundNanos / 1e6);
+    }
+
+    /**
+     * JFR event of one run, same fields as SolverMetrics
+     */
+    @Name("ypp170130.Solve")
+    @Label("CMST Solve")
+    @Category("CMST")
+    @Description("One run of a cmst heuristic")
+    static class SolveEvent extends Event {
+        @Label("Algorithm")
+        String algorithm;
+        @Label("Vertices")
+        int vertices;
+        @Label("Edges")
+        int edges;
+        @Label("Capacity")
+        int capacity;
+        @Label("Weight")
+        long weight;
+        @Label("Edges Examined")
+        long edgesExamined;
+        @Label("Capacity Rejections")
+        long capacityRejections;
+        @Label("Already Connected Rejections")
+        long connectedRejections;
+        @Label("Iterations")
+        long iterations;
+        @Label("Tradeoff Recomputations")
+        long tradeoffRecomputations;
+        @Label("Finds")
+        long finds;
+        @Label("Find Steps")
+        long findSteps;
+        @Label("Longest Find")
+        int longestFind;
+        @Label("Sort Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long sortTime;
+        @Label("Init Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long initTime;
+        @Label("Main Loop Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long loopTime;
+        @Label("Improve Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long improveTime;
+        @Label("Bound Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long boundTime;
+    }
+}
@@ -0,0 +1,267 @@
+package ypp170130;
+
+import java.io.*;
+
+/**
+ * Step tracing of the cmst heuristics.
+ * <p>
+ * Every step is a typed event with primitive parameters, so the solvers never build
+ * a message themselves. OFF ignores everything and costs nothing once inlined;
+ * loops that exist only to report state are guarded by enabled().
+ * text() writes the events in the format WMST always printed, through a buffer.
+ */
+interface Tracer {
+
+    /**
+     * Algorithm that emits an event
+     */
+    enum Algorithm {
+        KRUSKAL,
+        ESAU_WILLIAMS
+    }
+
+    /**
+     * tracer that ignores every event
+     */
+    Tracer OFF = new Tracer() {
+    };
+
+    /**
+     * @return true if events are recorded, false if they are dropped
+     */
+    default boolean enabled() {
+        return false;
+    }
+
+    /**
+     * kruskal's has sorted its edges, sortedEdge() follows for each of them
+     *
+     * @param count number of edges
+     */
+    default void sorted(int count) {
+    }
+
+    /**
+     * @param u from vertex
+     * @param v to vertex
+     * @param w weight
+     */
+    default void sortedEdge(int u, int v, int w) {
+    }
+
+    /**
+     * esau williams starts an iteration
+     *
+     * @param i iteration, from 1
+     */
+    default void iteration(int i) {
+    }
+
+    /**
+     * current tradeoff of a vertex, listed at the start of every iteration
+     *
+     * @param u        vertex
+     * @param tradeoff tradeoff value
+     */
+    default void tradeoff(int u, int tradeoff) {
+    }
+
+    /**
+     * @param tradeoff minimum tradeoff of this iteration
+     */
+    default void minimumTradeoff(int tradeoff) {
+    }
+
+    /**
+     * edge joins the tree
+     *
+     * @param a algorithm
+     * @param u from vertex
+     * @param v to vertex
+     * @param w weight
+     */
+    default void edgeAccepted(Algorithm a, int u, int v, int w) {
+    }
+
+    /**
+     * edge is rejected
+     *
+     * @param a      algorithm
+     * @param u      from vertex
+     * @param v      to vertex
+     * @param w      weight
+     * @param reason CapacitatedDisjointSet.ALREADY_CONNECTED or CONSTRAINT_VIOLATION
+     */
+    default void edgeRejected(Algorithm a, int u, int v, int w, int reason) {
+    }
+
+    /**
+     * kruskal's has V - 1 edges and stops
+     */
+    default void spanningTreeGenerated() {
+    }
+
+    /**
+     * kruskal's ran out of edges before reaching V - 1
+     */
+    default void infeasible() {
+    }
+
+    /**
+     * candidate lists were infeasible and now keep more edges
+     *
+     * @param k edges kept per vertex
+     */
+    default void widened(int k) {
+    }
+
+    /**
+     * esau williams found no negative tradeoff and stops
+     */
+    default void terminated() {
+    }
+
+    /**
+     * writes out buffered events
+     */
+    default void flush() {
+    }
+
+    /**
+     * @param out sink, buffered by the tracer
+     * @return tracer writing events as text
+     */
+    static Tracer text(Writer out) {
+        return new TextTracer(out);
+    }
+
+    /**
+     * Writes events in the text format of WMST's step printing.
+     * I/O errors are kept and rethrown by flush().
+     */
+    final class TextTracer implements Tracer {
+
+        private final Writer out;
+        private IOException error;
+
+        private TextTracer(Writer out) {
+            this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out, 1 << 16);
+        }
+
+        private void write(String s) {
+            try {
+                out.write(s);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+
+        private void write(int i) {
+            write(Integer.toString(i));
+        }
+
+        private void edge(int u, int v, int w) {
+            write("(");
+            write(u);
+            write(",");
+            write(v);
+            write(") [");
+            write(w);
+            write("]");
+        }
+
+        @Override
+        public boolean enabled() {
+            return true;
+        }
+
+        @Override
+        public void sorted(int count) {
+            write("Sorted Edges\n");
+        }
+
+        @Override
+        public void sortedEdge(int u, int v, int w) {
+            edge(u, v, w);
+            write("\n");
+        }
+
+        @Override
+        public void iteration(int i) {
+            write("\n\n\niteration: ");
+            write(i);
+        }
+
+        @Override
+        public void tradeoff(int u, int tradeoff) {
+            write("\ntrade-off(");
+            write(u);
+            write("):  ");
+            write(tradeoff);
+        }
+
+        @Override
+        public void minimumTradeoff(int tradeoff) {
+            write("\n\nminimum trade-off: ");
+            write(tradeoff);
+        }
+
+        @Override
+        public void edgeAccepted(Algorithm a, int u, int v, int w) {
+            write("\n");
+            if (a == Algorithm.KRUSKAL) {
+                edge(u, v, w);
+                write(": accept");
+            } else {
+                write("select ");
+                edge(u, v, w);
+            }
+        }
+
+        @Override
+        public void edgeRejected(Algorithm a, int u, int v, int w, int reason) {
+            boolean violation = reason == CapacitatedDisjointSet.CONSTRAINT_VIOLATION;
+            write("\n");
+            if (a == Algorithm.KRUSKAL) {
+                edge(u, v, w);
+                write(violation ? ": constraint violation" : ": reject, already connected");
+            } else {
+                write(violation ? "constraint violation" : "already connected");
+                write("\nreject ");
+                edge(u, v, w);
+            }
+        }
+
+        @Override
+        public void spanningTreeGenerated() {
+            write("\nspanning tree generated");
+        }
+
+        @Override
+        public void infeasible() {
+            write("\nspanning tree is infeasible for given graph and constraints");
+        }
+
+        @Override
+        public void widened(int k) {
+            write("\ncandidates widened to " + k + " edges per vertex\n\n");
+        }
+
+        @Override
+        public void terminated() {
+            write("\n\nterminate algorithm\n\n");
+        }
+
+        @Override
+        public void flush() {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                error = e;
+            }
+            if (error != null) {
+                throw new UncheckedIOException(error);
+            }
+        }
+    }
+}
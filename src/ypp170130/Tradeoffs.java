@@ -0,0 +1,173 @@
+package ypp170130;
+
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Recomputes the tradeoffs of dirty clusters for esau williams, on both backends.
+ * <p>
+ * A tradeoff is packed with its vertex into one long, tradeoff high and index low, so the
+ * minimum tradeoff with ties by index is simply the minimum key. The element with the minimum
+ * key stands for its cluster in the heap. In parallel mode the size of a batch is summed from
+ * the sizes of its clusters first, and only a large batch is listed and recomputed by a
+ * parallel stream, then each cluster reduces its keys to the minimum, in parallel for a large
+ * cluster. Each element only touches its own cursor and fields, the heap is updated
+ * afterwards on the calling thread, so the selected edges and the tree are the same as in
+ * sequential mode.
+ */
+class Tradeoffs {
+
+    static final long NONE = Long.MAX_VALUE; // key of an element without unprocessed edge
+    private static final int PARALLEL = 1 << 14; // smallest batch of elements done in parallel
+
+    /**
+     * recomputes the tradeoff of one element
+     */
+    interface Element {
+        /**
+         * @param u  element of cluster
+         * @param c2 cost of the link of its cluster to root
+         * @return key(tradeoff, u), or NONE if u has no unprocessed edge
+         */
+        long recompute(int u, int c2);
+    }
+
+    private final boolean parallel;
+    // batch of elements in parallel mode, clusters occupy consecutive ranges
+    private final int[] members;
+    private final long[] keys;
+    private final int[] c2; // cost of the link to root, by cluster of batch
+    private final int[] clusterOf; // cluster of batch, by position of element
+    private final int[] start; // start of range of each cluster of batch
+    private long recomputed; // elements recomputed so far
+
+    /**
+     * Constructor
+     *
+     * @param n        number of vertices
+     * @param parallel true to recompute large batches in parallel
+     */
+    Tradeoffs(int n, boolean parallel) {
+        this.parallel = parallel;
+        members = parallel ? new int[n] : null;
+        keys = parallel ? new long[n] : null;
+        c2 = parallel ? new int[n] : null;
+        clusterOf = parallel ? new int[n] : null;
+        start = parallel ? new int[n + 1] : null;
+    }
+
+    /**
+     * @return key ordering by tradeoff, ties by index
+     */
+    static long key(int tradeoff, int u) {
+        return ((long) tradeoff << 32) | u;
+    }
+
+    /**
+     * @return tradeoff of key
+     */
+    static int tradeoff(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * recomputes every dirty cluster and leaves the set empty
+     *
+     * @param dirty     representatives of clusters to recompute
+     * @param dsu       clusters
+     * @param rootCost  cost of the link of a cluster to root, by representative
+     * @param element   recomputes one element
+     * @param heap      one entry per cluster, at its element with minimum key
+     */
+    void update(DirtySet dirty, CapacitatedDisjointSet dsu, IntUnaryOperator rootCost, Element element,
+                IndexedMinHeap heap) {
+        if (parallel && elements(dirty, dsu) >= PARALLEL) {
+            batch(dirty, dsu, rootCost);
+            updateParallel(dirty, element, heap);
+            return;
+        }
+        while (!dirty.isEmpty()) {
+            int rep = dirty.remove();
+            int cost = rootCost.applyAsInt(rep);
+            long best = NONE;
+            int u = rep;
+            do {
+                best = Math.min(best, element.recompute(u, cost));
+                heap.remove(u);
+                u = dsu.next(u);
+                recomputed++;
+            } while (u != rep);
+            if (best != NONE) {
+                heap.update((int) best, tradeoff(best));
+            }
+        }
+    }
+
+    /**
+     * @return number of elements of all dirty clusters, from the sizes of the clusters
+     */
+    private static long elements(DirtySet dirty, CapacitatedDisjointSet dsu) {
+        long n = 0;
+        for (int c = 0; c < dirty.size(); c++) {
+            n += dsu.sizeOf(dirty.get(c));
+        }
+        return n;
+    }
+
+    /**
+     * lists the elements of all dirty clusters, cluster by cluster
+     *
+     * @return number of elements
+     */
+    private int batch(DirtySet dirty, CapacitatedDisjointSet dsu, IntUnaryOperator rootCost) {
+        int n = 0;
+        for (int c = 0; c < dirty.size(); c++) {
+            int rep = dirty.get(c);
+            c2[c] = rootCost.applyAsInt(rep);
+            start[c] = n;
+            int u = rep;
+            do {
+                clusterOf[n] = c;
+                members[n++] = u;
+                u = dsu.next(u);
+            } while (u != rep);
+        }
+        start[dirty.size()] = n;
+        return n;
+    }
+
+    private void updateParallel(DirtySet dirty, Element element, IndexedMinHeap heap) {
+        int clusters = dirty.size();
+        recomputed += start[clusters];
+        IntStream.range(0, start[clusters]).parallel()
+                .forEach(i -> keys[i] = element.recompute(members[i], c2[clusterOf[i]]));
+        for (int c = 0; c < clusters; c++) {
+            int lo = start[c], hi = start[c + 1];
+            long best = hi - lo >= PARALLEL
+                    ? IntStream.range(lo, hi).parallel().mapToLong(i -> keys[i]).min().getAsLong()
+                    : min(lo, hi);
+            for (int i = lo; i < hi; i++) {
+                heap.remove(members[i]);
+            }
+            if (best != NONE) {
+                heap.update((int) best, tradeoff(best));
+            }
+        }
+        dirty.clear();
+    }
+
+    /**
+     * @return number of tradeoffs recomputed by all update() calls
+     */
+    long recomputed() {
+        return recomputed;
+    }
+
+    private long min(int lo, int hi) {
+        long best = NONE;
+        for (int i = lo; i < hi; i++) {
+            best = Math.min(best, keys[i]);
+        }
+        return best;
+    }
+}
@@ -1,6 +1,9 @@
 package ypp170130;
 
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.util.*;
+import java.util.function.IntUnaryOperator;
 
 /**
  * author: yash pradhan (ypp170130)
@@ -8,233 +11,811 @@ import java.util.*;
  * WMST class for computing Capacitated Minimum Weight Spanning Tree using
  * 1. Modified Kruskal's Algorithm
  * 2. Esau Williams Heuristics
+ * <p>
+ * There is no static state: the constraint belongs to the graph and the results to
+ * the WMST instance, so separate instances can solve separate graphs concurrently.
+ * A single instance is meant to be used by one thread at a time.
  */
 public class WMST {
 
-    private static boolean printSteps;
+    private final Tracer trace; // steps of algorithm go here
+    private final PrintStream out; // results are printed here
+    private boolean lazySort; // kruskal's orders edges on demand, see LazyEdgeOrder
+    private boolean parallel; // esau williams recomputes large batches of tradeoffs in parallel
+    private long improveMillis; // time budget of local search after each heuristic, 0 for none
+    private int starts = 1; // esau williams runs, best tree kept, see MultiStartEsauWilliams
+    private long seed; // seed of the perturbed runs
+    private long boundMillis; // time budget of the lower bound of each result, 0 for none
     // to keep track for edges in mst
-    private static Set<Graph.Edge> mstEdges;
+    private Set<Graph.Edge> mstEdges;
+    private SolverMetrics metrics; // counters of the last run
+
+    /**
+     * Constructor: prints to System.out
+     *
+     * @param printSteps set true if you want detailed execution
+     */
+    WMST(boolean printSteps) {
+        this(printSteps, System.out);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param printSteps set true if you want detailed execution
+     * @param out        stream for steps and results
+     */
+    WMST(boolean printSteps, PrintStream out) {
+        this(printSteps ? Tracer.text(new OutputStreamWriter(out)) : Tracer.OFF, out);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param trace receives steps of algorithm
+     * @param out   stream for results
+     */
+    WMST(Tracer trace, PrintStream out) {
+        this.trace = trace;
+        this.out = out;
+    }
+
+    /**
+     * Lazy mode of modified kruskal's: edges are partitioned and ordered only as far as
+     * they are examined, edges that can no longer join are dropped before being ordered.
+     * Same trees as the full sort. Step printing lists every sorted edge, so lazy mode
+     * only applies while the tracer is disabled, and not once the graph keeps a sorted
+     * order from an earlier solve.
+     *
+     * @param lazySort true for lazy mode, false to sort all edges first (default)
+     * @return this instance
+     */
+    WMST lazySort(boolean lazySort) {
+        this.lazySort = lazySort;
+        return this;
+    }
+
+    /**
+     * Parallel mode of esau williams: large batches of tradeoffs, as after initialization
+     * or a merge into a large cluster, are recomputed on all cores, see Tradeoffs.
+     * Same trees as sequential mode.
+     *
+     * @param parallel true for parallel mode, false for sequential (default)
+     * @return this instance
+     */
+    WMST parallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
 
     /**
-     * routine to print steps of algorithm
+     * Improvement stage: after each heuristic, a local search moves and swaps vertices between
+     * subtrees of the root for at most this long, see LocalSearch. Results are then printed
+     * for the improved tree. Like esau williams, the stage sorts the adjacency rows of a
+     * CsrGraph it runs on; a Graph is searched through its csrView() and left as it is.
      *
-     * @param s message
+     * @param millis time budget per tree, 0 to skip the stage (default)
+     * @return this instance
      */
-    static void print(String s) {
-        if (printSteps) System.out.print(s);
+    WMST improve(long millis) {
+        this.improveMillis = millis;
+        return this;
+    }
+
+    /**
+     * Multi-start mode of esau williams: the heuristic runs this many times on all cores,
+     * every run but the first with seeded noise on its tradeoffs, and the lightest tree is kept,
+     * see MultiStartEsauWilliams. Each run needs O(V) memory of its own. Applies only while
+     * the tracer is disabled, the improvement stage then runs on the kept tree.
+     *
+     * @param starts number of runs, 1 for the deterministic heuristic (default)
+     * @param seed   seed of the perturbed runs, same seed gives the same tree
+     * @return this instance
+     */
+    WMST multiStart(int starts, long seed) {
+        this.starts = starts;
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Bound stage: after each heuristic, a lower bound on the optimal weight is computed for
+     * at most this long, and printed with the gap of the result, see LowerBound. Instances of
+     * up to LowerBound.EXACT vertices are searched by branch and bound, which may prove the
+     * optimum within the budget.
+     *
+     * @param millis time budget per result, 0 to skip the stage (default)
+     * @return this instance
+     */
+    WMST bound(long millis) {
+        this.boundMillis = millis;
+        return this;
+    }
+
+    /**
+     * runs the bound stage on a feasible result of a Graph, through its shared CsrGraph copy
+     *
+     * @param g graph
+     * @param r result of a heuristic
+     * @return r, its lower bound set if the stage is enabled
+     */
+    private CmstResult bound(Graph g, CmstResult r) {
+        return boundMillis > 0 && r.feasible ? bound(g.csrView(), r) : r;
+    }
+
+    /**
+     * runs the bound stage on a feasible result within the time budget
+     *
+     * @param g graph
+     * @param r result of a heuristic
+     * @return r, its lower bound set if the stage is enabled
+     */
+    private CmstResult bound(CsrGraph g, CmstResult r) {
+        if (boundMillis > 0 && r.feasible) {
+            LowerBound lb = new LowerBound(g);
+            r.lowerBound = lb.solve(r.weight, System.nanoTime() + boundMillis * 1000000);
+            r.optimal = lb.exact();
+            metrics.boundNanos = metrics.lap();
+        }
+        return r;
+    }
+
+    /**
+     * runs the local search stage on a feasible tree within the time budget
+     *
+     * @param g    graph
+     * @param tree labels of edges in tree
+     * @param n    number of edges in tree
+     * @return local search holding the improved tree
+     */
+    private LocalSearch localSearch(CsrGraph g, int[] tree, int n) {
+        LocalSearch search = new LocalSearch(g, tree, n);
+        search.run(System.nanoTime() + improveMillis * 1000000);
+        return search;
+    }
+
+    /**
+     * improves a tree of a Graph through its shared CsrGraph copy, edge labels are the same
+     *
+     * @param g    graph
+     * @param tree edges of tree
+     * @return edges of improved tree
+     */
+    private List<Graph.Edge> localSearch(Graph g, Collection<Graph.Edge> tree) {
+        int[] labels = new int[tree.size()];
+        int n = 0;
+        for (Graph.Edge e : tree) {
+            labels[n++] = e.getLabel();
+        }
+        List<Graph.Edge> improved = new ArrayList<>();
+        for (int e : localSearch(g.csrView(), labels, n).tree()) {
+            improved.add(g.getEdge(e));
+        }
+        return improved;
+    }
+
+    /**
+     * @return edges in the tree of the last esau williams run on a Graph
+     */
+    Set<Graph.Edge> getMstEdges() {
+        return mstEdges;
+    }
+
+    /**
+     * @return counters and phase times of the last run, on either backend
+     */
+    SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * prints a feasible result in the format of the step output
+     *
+     * @param r       result
+     * @param kruskal true for the layout of modified kruskal's
+     */
+    private void print(CmstResult r, boolean kruskal) {
+        StringBuilder sb = new StringBuilder(kruskal ? "\n\nResults:\nSpanning Tree Edges:\n" : "Results:\nSpanning Tree Edges:\n");
+        for (int i = 0; i < r.size(); i++) {
+            sb.append('(').append(r.from[i]).append(',').append(r.to[i]).append(") [").append(r.cost[i]).append("]\n");
+        }
+        sb.append("\nWeight: ").append(r.weight).append('\n');
+        if (r.lowerBound >= 0) {
+            sb.append(r.optimal ? "Optimum: " : "Lower bound: ").append(r.lowerBound);
+            // a bound of 0 under a heavier tree has no gap in percent
+            sb.append(Double.isNaN(r.gap()) ? "\n" : String.format(Locale.ROOT, " (gap %.2f%%)%n", 100 * r.gap()));
+        }
+        if (kruskal) {
+            sb.append("______________________________________________\n");
+        }
+        out.print(sb);
+    }
+
+    /**
+     * Weights are long from the solvers on, the printing entry points below keep the int
+     * they have always returned. They check it before printing, so a weight beyond
+     * Integer.MAX_VALUE fails without output; solve*() returns such weights as long.
+     *
+     * @param weight weight of a result, -1 if infeasible
+     * @return weight as int
+     * @throws ArithmeticException if the weight does not fit an int
+     */
+    private static int legacy(long weight) {
+        return Math.toIntExact(weight);
+    }
+
+    /**
+     * Modified Kruskals Algorithm, printing the result
+     *
+     * @param g graph
+     * @return weight of the minimum spanning tree, -1 if infeasible
+     * @throws ArithmeticException if the weight exceeds Integer.MAX_VALUE, nothing is printed then,
+     *                             use solveModifiedKruskals() for such graphs
+     */
+    int wmstModifiedKruskals(Graph g) {
+        CmstResult r = solveModifiedKruskals(g);
+        int wmst = legacy(r.weight);
+        if (r.feasible) {
+            print(r, true);
+        }
+        return wmst;
     }
 
     /**
      * Modified Kruskals Algorithm
-     * Computes weight of the capacitated minimum spanning tree using modified kruskal's algorithm.
+     * Computes the capacitated minimum spanning tree using modified kruskal's algorithm.
+     * Nothing is printed apart from the steps.
      *
      * @param g graph
-     * @return weight of the minimum spanning tree
+     * @return tree, infeasible if the constraints leave no spanning tree
      */
-    private static int wmstModifiedKruskals(Graph g) {
+    CmstResult solveModifiedKruskals(Graph g) {
+        SolverMetrics m = metrics = new SolverMetrics(Tracer.Algorithm.KRUSKAL, g.V(), g.E(), g.W());
+        g.beginSolve();
         mstEdges = new HashSet<>();
-        int wmst = 0;
-        Graph.Edge[] edges = g.getEdgeArray();
+        long wmst = 0;
+        long[] keys;
         List<Graph.Edge> result = new ArrayList<>();
 
-        // sort the edges in ascending order
-        Arrays.sort(edges);
-        print("Sorted Edges\n");
-        for (Graph.Edge e : edges) {
-            print(e.toString() + "\n");
+        LazyEdgeOrder lazy = null;
+        if (lazySort && !trace.enabled() && !g.hasEdgeOrder()) {
+            keys = g.getEdgeArray();
+            lazy = new LazyEdgeOrder(keys, i -> {
+                Graph.Edge e = g.getEdge(i);
+                return e.getFrom().joinable(e.getTo());
+            });
+        } else {
+            // edges in ascending order, sorted once per graph
+            keys = g.sortedEdgeArray();
         }
-        for (Graph.Edge e : edges) {
+        m.sortNanos = m.lap();
+        if (trace.enabled()) {
+            trace.sorted(keys.length);
+            for (long key : keys) {
+                Graph.Edge e = g.getEdge(key);
+                trace.sortedEdge(e.getFrom().getName(), e.getTo().getName(), e.getWeight());
+            }
+        }
+        for (int i = 0; lazy != null ? lazy.hasNext() : i < keys.length; i++) {
+            Graph.Edge e = g.getEdge(lazy != null ? lazy.next() : keys[i]);
             // check if we have a tree
             if (result.size() == g.V() - 1) {
-                print("\nspanning tree generated");
+                trace.spanningTreeGenerated();
                 break;
             }
-            print("\n" + e.toString());
-
             Graph.Vertex u, v;
             u = e.getFrom();
             v = e.getTo();
             // union function takes care of handling the constraints
-            if (u.union(v)) {
-                print(": accept");
+            int outcome = u.union(v);
+            m.examined(outcome);
+            if (CapacitatedDisjointSet.accepted(outcome)) {
+                trace.edgeAccepted(Tracer.Algorithm.KRUSKAL, u.getName(), v.getName(), e.getWeight());
                 wmst += e.getWeight();
                 result.add(e);
+            } else {
+                trace.edgeRejected(Tracer.Algorithm.KRUSKAL, u.getName(), v.getName(), e.getWeight(), outcome);
             }
         }
+        m.loopNanos = m.lap();
+        m.finds(g.dsu);
         // if constructing such a tree is infeasible given the constraints
         if (result.size() != g.V() - 1) {
-            print("\nspanning tree is infeasible for given graph and constraints");
-            return -1;
+            trace.infeasible();
+            trace.flush();
+            m.end(-1);
+            return CmstResult.infeasible(g.V());
         }
-        // print the edges in mst
-        System.out.println("\n\nResults:\nSpanning Tree Edges:");
-        for (int i = 0; i < result.size(); i++) {
-            System.out.println(result.get(i));
+        trace.flush();
+        if (improveMillis > 0) {
+            result = localSearch(g, result);
+            wmst = 0;
+            for (Graph.Edge e : result) {
+                wmst += e.getWeight();
+            }
+            m.improveNanos = m.lap();
         }
-        System.out.println("\nWeight: " + wmst);
-        System.out.println("______________________________________________");
-        return wmst;
+        CmstResult r = bound(g, CmstResult.of(g, result, wmst));
+        m.end(wmst);
+        return r;
     }
 
     /**
      * initializes some fields of vertices for using Esau Williams heuristics
      *
      * @param g graph
-     * @return weight of the minimum spanning tree
+     * @return weight of the star of root edges
      */
-    private static int initEsauWilliams(Graph g) {
+    private long initEsauWilliams(Graph g) {
         mstEdges = new HashSet<>();
-        // sort edges of each vertex in graph
+        // sort edges of each vertex in graph, kept from an earlier solve
         for (Graph.AdjacencyList al : g.adjList) {
-            List<Graph.Edge> edgeList = al.edges;
-            Collections.sort(edgeList);
-            al.edges = edgeList;
+            al.sortEdges();
         }
+        metrics.sortNanos = metrics.lap();
 
-        int wmst = 0;
+        long wmst = 0;
         // connect each node to root, we get upper bound on weight of cmst
         Graph.Vertex root = g.root;
-        for (Graph.Edge e : g.adjList[root.getIndex()].edges) {
+        for (Graph.Edge e : g.adjList[root.getIndex()].sortedEdges()) {
             // neighbours of root
             Graph.Vertex u = e.getTo();
-            // initially each vertex is a cluster
-            u.elements.add(u);
-            // cluster representative should know, which node in its cluster
-            // is nearest to root, initially just use this edge
+            // initially each vertex is a cluster, linked to root by this edge
+            // cluster representative keeps the link, for efficient computation of tradeoffs
             u.connectingLink = e;
-            // book keeping, for efficient computation of tradeoffs
-            u.defaultLink = e;
 
             wmst += e.getWeight();
             e.s = Graph.Status.USED; // mark edge
             mstEdges.add(e);
         }
+        metrics.initNanos = metrics.lap();
         return wmst;
     }
 
     /**
-     * Computes the trade off value
+     * Computes the trade off value of an element of a cluster
      *
-     * @param g            graph
-     * @param u            vertex whose trade off we want to compute
-     * @param selectedEdge wrapper for edge that have minimum cost and yet unprocessed
-     * @return trade off value
+     * @param g  graph
+     * @param u  index of vertex whose trade off we want to compute
+     * @param c2 cost of the connecting link of its cluster
+     * @return Tradeoffs.key() of trade off, Tradeoffs.NONE if no edge is left
      */
-    private static int tradeoff(Graph g, Graph.Vertex u, Graph.Edge[] selectedEdge) {
+    private static long tradeoff(Graph g, int u, int c2) {
         // heuristic
         // trade off = min_j cost(Nu, Nj) - cost(comp(Nu), root)
-        int c1 = 0, c2;
+        Graph.Vertex x = g.getVertex(u);
         // select the next smallest unprocessed edge for computing tradeoff
-        for (Graph.Edge e : g.adjList[u.getIndex()].edges) {
-            if (e.s == Graph.Status.UNPROCESSED) {
-                selectedEdge[0] = e;
-                c1 = selectedEdge[0].getWeight();
-                break;
-            }
-        }
-        // find cost(comp(Nu), root)
-        // book keeping of these information helps to compute this value easily
-        // u.find() gives representative of cluster
-        // representative knows edge that connects cluster to root
-        c2 = u.find().connectingLink.getWeight();
-        return c1 - c2;
+        // the cursor has already skipped every used or discarded edge
+        Graph.Edge e = g.adjList[u].nextUnprocessed();
+        x.tradeoffEdge = e;
+        x.tradeoff = (e == null ? 0 : e.getWeight()) - c2;
+        return e == null ? Tradeoffs.NONE : Tradeoffs.key(x.tradeoff, u);
     }
 
     /**
-     * to determine if we can terminate the algortihm
-     * false indicates, we still need to recompute tradeoff
+     * Esau Williams Heuristic to find cmst
+     * <p>
+     * Tradeoffs are kept in an indexed min-heap with one entry per cluster, only the
+     * clusters that changed are recomputed, so selecting the best merge costs O(log V).
+     * Changed clusters are flagged in a dirty set, each is recomputed once per iteration.
+     * The algorithm terminates once the minimum tradeoff is positive. A cluster
+     * without any unprocessed edge has no tradeoff and leaves the heap.
+     * <p>
+     * The selected edge joins the cluster of the vertex whose tradeoff it is to the other
+     * cluster and replaces the connecting link of the former, the merged cluster keeps the
+     * connecting link of the latter.
      *
      * @param g graph
-     * @return true if all tradeoffs are positive, false otherwise
+     * @return tree
      */
-    private static boolean allPositive(Graph g) {
-        for (Graph.AdjacencyList al : g.adjList) {
-            if (al.u == g.root) continue;
-            if (al.u.tradeoff > 0) {
-                continue;
+    CmstResult solveEsauWilliams(Graph g) {
+        if (starts > 1 && !trace.enabled()) {
+            // runs share the rows of a CsrGraph copy, edge labels are the same
+            CmstResult r = multiStart(g.csrView());
+            mstEdges = new HashSet<>();
+            for (int e : r.edges) {
+                mstEdges.add(g.getEdge(e));
             }
-            return false;
+            CmstResult result = CmstResult.of(g, mstEdges, r.weight);
+            result.lowerBound = r.lowerBound;
+            result.optimal = r.optimal;
+            return result;
         }
-        return true;
-    }
-
-    /**
-     * Esau Williams Heuristic to find cmst
-     *
-     * @param g graph
-     * @return value of cmst
-     */
-    private static int esauWilliams(Graph g) {
-        int wmst = initEsauWilliams(g);
-        // used to accumulate vertices that require re-computation
+        SolverMetrics m = metrics = new SolverMetrics(Tracer.Algorithm.ESAU_WILLIAMS, g.V(), g.E(), g.W());
+        g.beginSolve();
+        long wmst = initEsauWilliams(g);
+        IndexedMinHeap heap = new IndexedMinHeap(g.V());
+        // representatives of clusters that require re-computation
         // start by putting nodes 1 .. n
-        LinkedList<Graph.Vertex> q = new LinkedList<>();
+        DirtySet dirty = new DirtySet(g.V());
         for (Graph.AdjacencyList al : g.adjList) {
             Graph.Vertex u = al.getVertex();
             if (u == g.root) continue;
-            q.add(u);
+            dirty.add(u.getIndex());
         }
+        Tradeoffs tradeoffs = new Tradeoffs(g.V(), parallel);
+        // representative knows edge that connects cluster to root
+        IntUnaryOperator rootCost = rep -> g.getVertex(rep).connectingLink.getWeight();
+        Tradeoffs.Element element = (u, c2) -> tradeoff(g, u, c2);
+        Graph.Edge[] replaced = new Graph.Edge[1];
         int i = 0;
-        while (true) {
-            // terminate when all trade-offs are >= 0
-            if (allPositive(g)) {
-                print("\n\nterminate algorithm\n\n");
+        int minTradeoff;
+        do {
+            // compute trade-off for clusters that require (re)computation
+            tradeoffs.update(dirty, g.dsu, rootCost, element, heap);
+            if (heap.isEmpty()) {
                 break;
             }
-            //System.out.println("iteration:" + i++);
-            int n = q.size();
-            Graph.Edge selectedE = null;
-            int minTradeoff = Integer.MAX_VALUE;
-            // compute trade-off for n vertices that require (re)computation
-            while (n > 0) {
-                Graph.Vertex u = q.remove();
-                Graph.Edge[] e = new Graph.Edge[1];
-                u.tradeoff = tradeoff(g, u, e);
-                u.tradeoffEdge = e[0];
-                n--;
-            }
-            print("\n\n\niteration: " + ++i);
-            // find minimum trade off
-            for (Graph.AdjacencyList al : g.adjList) {
-                Graph.Vertex u = al.getVertex();
-                if (u == g.root) continue;
-                if (u.tradeoff < minTradeoff) {
-                    minTradeoff = u.tradeoff;
-                    selectedE = u.tradeoffEdge;
+            trace.iteration(++i);
+            if (trace.enabled()) {
+                for (Graph.AdjacencyList al : g.adjList) {
+                    Graph.Vertex u = al.getVertex();
+                    if (u == g.root) continue;
+                    trace.tradeoff(u.getName(), u.tradeoff);
                 }
-                print("\ntrade-off(" + u.getName() + "):  " + u.tradeoff);
             }
-            print("\n\nminimum trade-off: " + minTradeoff);
+            // find minimum trade off
+            minTradeoff = heap.minKey();
+            Graph.Vertex x = g.getVertex(heap.peekMin());
+            Graph.Edge selectedE = x.tradeoffEdge;
+            trace.minimumTradeoff(minTradeoff);
             // determine whether to select this edge or not
             Graph.Vertex u, v;
             u = selectedE.getFrom();
             v = selectedE.getTo();
-            Graph.Vertex[] updated = new Graph.Vertex[1];
-            if (u.unionEW(v, updated)) {
-                print("\nselect " + selectedE.toString());
+            Graph.Vertex y = selectedE.getOther(x);
+            // every vertex is linked to root from the start, so an accepted edge merges
+            int outcome = x.unionEW(y, replaced);
+            m.examined(outcome);
+            if (CapacitatedDisjointSet.accepted(outcome)) {
+                trace.edgeAccepted(Tracer.Algorithm.ESAU_WILLIAMS, u.getName(), v.getName(), selectedE.getWeight());
                 selectedE.s = Graph.Status.USED;
-                q.addAll(u.find().elements); // add nodes for re-computation
                 // update minimum spanning tree
-                wmst = wmst - updated[0].defaultLink.getWeight() + selectedE.getWeight();
-                mstEdges.remove(updated[0].defaultLink);
+                wmst = wmst - replaced[0].getWeight() + selectedE.getWeight();
+                mstEdges.remove(replaced[0]);
                 mstEdges.add(selectedE);
             } else {
-                print("\nreject " + selectedE.toString());
+                trace.edgeRejected(Tracer.Algorithm.ESAU_WILLIAMS, u.getName(), v.getName(), selectedE.getWeight(), outcome);
                 selectedE.s = Graph.Status.DISCARD;
-                // add nodes for re-computation
-                q.addAll(u.find().elements);
-                q.addAll(v.find().elements);
             }
+            // add clusters for re-computation, the merged cluster or both clusters
+            dirty.add(x.find().getIndex());
+            dirty.add(y.find().getIndex());
+        } while (minTradeoff <= 0); // terminate when all trade-offs are positive
+        m.loopNanos = m.lap();
+        m.iterations = i;
+        m.tradeoffRecomputations = tradeoffs.recomputed();
+        m.finds(g.dsu);
+        trace.terminated();
+        trace.flush();
+        if (improveMillis > 0) {
+            mstEdges = new HashSet<>(localSearch(g, mstEdges));
+            wmst = 0;
+            for (Graph.Edge e : mstEdges) {
+                wmst += e.getWeight();
+            }
+            m.improveNanos = m.lap();
         }
+        CmstResult r = bound(g, CmstResult.of(g, mstEdges, wmst));
+        m.end(wmst);
+        return r;
+    }
+
+    /**
+     * Esau Williams Heuristic, printing the result
+     *
+     * @param g graph
+     * @return value of cmst
+     * @throws ArithmeticException if the weight exceeds Integer.MAX_VALUE, nothing is printed then,
+     *                             use solveEsauWilliams() for such graphs
+     */
+    int esauWilliams(Graph g) {
+        CmstResult r = solveEsauWilliams(g);
+        int wmst = legacy(r.weight);
+        print(r, false);
+        return wmst;
+    }
 
-        System.out.println("Results:\nSpanning Tree Edges:");
-        for (Graph.Edge e : mstEdges) {
-            System.out.println(e);
+    /**
+     * Modified Kruskals Algorithm on the CSR backend, printing the result
+     *
+     * @param g graph
+     * @return weight of the minimum spanning tree, -1 if infeasible
+     * @throws ArithmeticException if the weight exceeds Integer.MAX_VALUE, nothing is printed then,
+     *                             use solveModifiedKruskals() for such graphs
+     */
+    int wmstModifiedKruskals(CsrGraph g) {
+        CmstResult r = solveModifiedKruskals(g);
+        int wmst = legacy(r.weight);
+        if (r.feasible) {
+            print(r, true);
         }
-        System.out.println("\nWeight: " + wmst);
         return wmst;
     }
 
+    /**
+     * Modified Kruskals Algorithm on the CSR backend
+     * Same steps as solveModifiedKruskals(Graph), union find state lives in int arrays
+     *
+     * @param g graph
+     * @return tree, infeasible if the constraints leave no spanning tree
+     */
+    CmstResult solveModifiedKruskals(CsrGraph g) {
+        SolverMetrics m = metrics = new SolverMetrics(Tracer.Algorithm.KRUSKAL, g);
+        int V = g.V();
+        CapacitatedDisjointSet dsu = new CapacitatedDisjointSet(V, g.root, g.W, g.demands());
+        long wmst = 0;
+        int[] result = new int[Math.max(V - 1, 0)];
+        int n = 0;
+        m.initNanos = m.lap();
+        long[] keys;
+        LazyEdgeOrder lazy = null;
+        if (lazySort && !trace.enabled() && !g.hasEdgeOrder()) {
+            keys = g.edgeKeys();
+            lazy = new LazyEdgeOrder(keys, e -> dsu.joinable(g.from[e], g.to[e]));
+        } else {
+            keys = g.sortedEdgeKeys();
+        }
+        m.sortNanos = m.lap();
+        if (trace.enabled()) {
+            trace.sorted(keys.length);
+            for (long key : keys) {
+                int e = (int) key;
+                trace.sortedEdge(g.from[e], g.to[e], g.weight[e]);
+            }
+        }
+        for (int i = 0; lazy != null ? lazy.hasNext() : i < keys.length; i++) {
+            int e = (int) (lazy != null ? lazy.next() : keys[i]);
+            // check if we have a tree
+            if (n == V - 1) {
+                trace.spanningTreeGenerated();
+                break;
+            }
+            // union function takes care of handling the constraints
+            int outcome = dsu.union(g.from[e], g.to[e]);
+            m.examined(outcome);
+            if (!CapacitatedDisjointSet.accepted(outcome)) {
+                trace.edgeRejected(Tracer.Algorithm.KRUSKAL, g.from[e], g.to[e], g.weight[e], outcome);
+                continue;
+            }
+            trace.edgeAccepted(Tracer.Algorithm.KRUSKAL, g.from[e], g.to[e], g.weight[e]);
+            wmst += g.weight[e];
+            result[n++] = e;
+        }
+        m.loopNanos = m.lap();
+        m.finds(dsu);
+        // if constructing such a tree is infeasible given the constraints
+        if (n != V - 1) {
+            trace.infeasible();
+            trace.flush();
+            m.end(-1);
+            return CmstResult.infeasible(V);
+        }
+        trace.flush();
+        if (improveMillis > 0) {
+            LocalSearch search = localSearch(g, result, n);
+            result = search.tree();
+            wmst = search.weight();
+            m.improveNanos = m.lap();
+        }
+        CmstResult r = bound(g, CmstResult.of(g, result, n, wmst));
+        m.end(wmst);
+        return r;
+    }
+
+    /**
+     * Esau Williams Heuristic on the CSR backend, printing the result
+     *
+     * @param g graph
+     * @return value of cmst
+     * @throws ArithmeticException if the weight exceeds Integer.MAX_VALUE, nothing is printed then,
+     *                             use solveEsauWilliams() for such graphs
+     */
+    int esauWilliams(CsrGraph g) {
+        CmstResult r = solveEsauWilliams(g);
+        int wmst = legacy(r.weight);
+        print(r, false);
+        return wmst;
+    }
+
+    /**
+     * Esau Williams Heuristic on the CSR backend
+     * Same steps as solveEsauWilliams(Graph): one heap entry per cluster, dirty clusters,
+     * per vertex cursor into its sorted row, edge status in a byte array.
+     *
+     * @param g graph
+     * @return tree, edges in order of label
+     */
+    CmstResult solveEsauWilliams(CsrGraph g) {
+        if (starts > 1 && !trace.enabled()) {
+            return multiStart(g);
+        }
+        final byte UNPROCESSED = 0, USED = 1, DISCARD = 2;
+        SolverMetrics m = metrics = new SolverMetrics(Tracer.Algorithm.ESAU_WILLIAMS, g);
+        g.sortAdjacency();
+        m.sortNanos = m.lap();
+        int V = g.V(), root = g.root;
+        CapacitatedDisjointSet dsu = new CapacitatedDisjointSet(V, root, g.W, g.demands());
+        int[] connectingLink = new int[V]; // link of cluster to root, kept by representative
+        int[] cursor = new int[V]; // next slot in row that may be unprocessed
+        int[] tradeoff = new int[V];
+        int[] tradeoffEdge = new int[V]; // -1 if no unprocessed edge is left
+        byte[] status = new byte[g.E()];
+        boolean[] inTree = new boolean[g.E()];
+        for (int u = 0; u < V; u++) {
+            cursor[u] = g.offsets[u];
+        }
+
+        // connect each node to root, we get upper bound on weight of cmst
+        long wmst = 0;
+        for (int i = g.offsets[root]; i < g.offsets[root + 1]; i++) {
+            int e = g.edgeIds[i];
+            int u = g.targets[i];
+            connectingLink[u] = e;
+            wmst += g.weights[i];
+            status[e] = USED;
+            inTree[e] = true;
+        }
+        m.initNanos = m.lap();
+
+        IndexedMinHeap heap = new IndexedMinHeap(V);
+        // representatives of clusters that require re-computation
+        DirtySet dirty = new DirtySet(V);
+        for (int u = 0; u < V; u++) {
+            if (u == root) continue;
+            dirty.add(u);
+        }
+        Tradeoffs tradeoffs = new Tradeoffs(V, parallel);
+        // trade off of an element: next unprocessed edge of its row - link of its cluster
+        Tradeoffs.Element element = (u, c2) -> {
+            int end = g.offsets[u + 1];
+            int i = cursor[u];
+            while (i < end && status[g.edgeIds[i]] != UNPROCESSED) {
+                i++;
+            }
+            cursor[u] = i;
+            tradeoffEdge[u] = i == end ? -1 : g.edgeIds[i];
+            tradeoff[u] = (i == end ? 0 : g.weights[i]) - c2;
+            return i == end ? Tradeoffs.NONE : Tradeoffs.key(tradeoff[u], u);
+        };
+        IntUnaryOperator rootCost = rep -> g.weight[connectingLink[rep]];
+        int iteration = 0;
+        int minTradeoff;
+        do {
+            // compute trade-off for clusters that require (re)computation
+            tradeoffs.update(dirty, dsu, rootCost, element, heap);
+            if (heap.isEmpty()) {
+                break;
+            }
+            trace.iteration(++iteration);
+            if (trace.enabled()) {
+                for (int u = 0; u < V; u++) {
+                    if (u == root) continue;
+                    trace.tradeoff(u, tradeoff[u]);
+                }
+            }
+            // minimum trade off
+            minTradeoff = heap.minKey();
+            trace.minimumTradeoff(minTradeoff);
+            int x = heap.peekMin();
+            int e = tradeoffEdge[x];
+            int y = g.other(e, x);
+            int repX = dsu.find(x), repY = dsu.find(y);
+            // every vertex is linked to root from the start, so an accepted edge merges
+            int outcome = dsu.union(x, y);
+            m.examined(outcome);
+            if (CapacitatedDisjointSet.accepted(outcome)) {
+                trace.edgeAccepted(Tracer.Algorithm.ESAU_WILLIAMS, g.from[e], g.to[e], g.weight[e]);
+                status[e] = USED;
+                // selected edge replaces the link of the cluster of x
+                wmst = wmst - g.weight[connectingLink[repX]] + g.weight[e];
+                inTree[connectingLink[repX]] = false;
+                inTree[e] = true;
+                connectingLink[dsu.find(x)] = connectingLink[repY];
+            } else {
+                trace.edgeRejected(Tracer.Algorithm.ESAU_WILLIAMS, g.from[e], g.to[e], g.weight[e], outcome);
+                status[e] = DISCARD;
+            }
+            // add clusters for re-computation, the merged cluster or both clusters
+            dirty.add(dsu.find(x));
+            dirty.add(dsu.find(y));
+        } while (minTradeoff <= 0); // terminate when all trade-offs are positive
+        m.loopNanos = m.lap();
+        m.iterations = iteration;
+        m.tradeoffRecomputations = tradeoffs.recomputed();
+        m.finds(dsu);
+        trace.terminated();
+        trace.flush();
+        if (improveMillis > 0) {
+            int[] tree = new int[V - 1];
+            int n = 0;
+            for (int e = 0; e < g.E(); e++) {
+                if (inTree[e]) {
+                    tree[n++] = e;
+                    inTree[e] = false;
+                }
+            }
+            LocalSearch search = localSearch(g, tree, n);
+            for (int e : search.tree()) {
+                inTree[e] = true;
+            }
+            wmst = search.weight();
+            m.improveNanos = m.lap();
+        }
+        int[] tree = new int[Math.max(V - 1, 0)];
+        int n = 0;
+        for (int e = 0; e < g.E(); e++) {
+            if (inTree[e]) {
+                tree[n++] = e;
+            }
+        }
+        CmstResult r = bound(g, CmstResult.of(g, tree, n, wmst));
+        m.end(wmst);
+        return r;
+    }
+
+    /**
+     * Multi-start esau williams, see multiStart(int, long)
+     *
+     * @param g graph
+     * @return lightest tree of all runs, improved if the stage is enabled
+     */
+    private CmstResult multiStart(CsrGraph g) {
+        SolverMetrics m = metrics = new SolverMetrics(Tracer.Algorithm.ESAU_WILLIAMS, g);
+        g.sortAdjacency(); // before the runs share the rows
+        m.sortNanos = m.lap();
+        MultiStartEsauWilliams runs = new MultiStartEsauWilliams(g, MultiStartEsauWilliams.NOISE, seed);
+        MultiStartEsauWilliams.Run best = runs.solve(starts);
+        m.loopNanos = m.lap();
+        m.iterations = runs.iterations();
+        m.tradeoffRecomputations = runs.recomputed();
+        m.finds = runs.finds();
+        int[] tree = best.tree;
+        long wmst = best.weight;
+        if (improveMillis > 0) {
+            LocalSearch search = localSearch(g, tree, tree.length);
+            tree = search.tree();
+            Arrays.sort(tree);
+            wmst = search.weight();
+            m.improveNanos = m.lap();
+        }
+        CmstResult r = bound(g, CmstResult.of(g, tree, tree.length, wmst));
+        m.end(wmst);
+        return r;
+    }
+
+    /**
+     * Modified Kruskals Algorithm on candidate lists
+     * Runs on the k cheapest edges per vertex plus the root edges. While that is infeasible,
+     * edges are added back by widening the candidates, until every edge is kept. Repeated
+     * widening thus ends with the complete graph in memory, CandidateGraph.limit() caps k.
+     *
+     * @param c candidate lists
+     * @return weight of the minimum spanning tree, -1 if infeasible on the widest candidates
+     * @throws ArithmeticException if the weight exceeds Integer.MAX_VALUE, nothing is printed then,
+     *                             as in wmstModifiedKruskals(CsrGraph)
+     */
+    int wmstModifiedKruskals(CandidateGraph c) {
+        int wmst;
+        while ((wmst = wmstModifiedKruskals(c.graph())) < 0 && c.widen()) {
+            trace.widened(c.k());
+        }
+        return wmst;
+    }
+
+    /**
+     * Esau Williams Heuristic on candidate lists
+     * The star of root edges is always kept, so the candidates never need widening.
+     *
+     * @param c candidate lists
+     * @return value of cmst
+     * @throws ArithmeticException if the weight exceeds Integer.MAX_VALUE, nothing is printed then,
+     *                             as in esauWilliams(CsrGraph)
+     */
+    int esauWilliams(CandidateGraph c) {
+        return esauWilliams(c.graph());
+    }
+
     /**
      * Driver Code
      * <p>
@@ -248,18 +829,18 @@ public class WMST {
         String s4 = "6 15 3   1 3 35   1 2 42   0 1 55   2 4 55   0 2 62   3 4 63   3 5 65   4 5 70   2 3 85    1 4 88   0 3 95  1 5 100  0 4 125  2 5 130  0 5 150";
         String[] strs = new String[]{s1, s2, s3, s4};
 
-        printSteps = true;
+        WMST solver = new WMST(true);
         for (String s : strs) {
             Graph g1 = Graph.construct(new Scanner(s));
             g1.printGraph();
             System.out.println("\nModified Kruskals Algorithm\n");
-            wmstModifiedKruskals(g1);
+            solver.wmstModifiedKruskals(g1);
 
             System.out.println("\nEsau Williams Heuristic\n");
             Graph g2 = Graph.construct(new Scanner(s));
-            esauWilliams(g2);
+            solver.esauWilliams(g2);
 
-            printSteps = false;
+            solver = new WMST(false);
         }
     }
 }